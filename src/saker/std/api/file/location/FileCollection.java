@@ -29,7 +29,7 @@ import java.util.Objects;
  * <p>
  * Clients shouldn't implement this interface.
  * <p>
- * Use {@link #create(Collection)} to create a new instance.
+ * Use {@link #create(Collection)} or {@link #createSorted(Collection)} to create a new instance.
  */
 public interface FileCollection extends Iterable<FileLocation> {
 	/**
@@ -47,4 +47,31 @@ public interface FileCollection extends Iterable<FileLocation> {
 		Objects.requireNonNull(files, "files");
 		return new FileCollectionImpl(files);
 	}
+
+	/**
+	 * Creates a new {@link FileCollection} that contains the argument file locations ordered by their paths.
+	 * <p>
+	 * Duplicate file locations are only enclosed once. If an execution and a local file location have the same path,
+	 * the execution file location comes first.
+	 * <p>
+	 * The created collection stores the paths of the file locations in a compact form, so it should be preferred when
+	 * the file locations share common parent directories, and their order is not relevant.
+	 * <p>
+	 * The created collection is equal to a collection created by {@link #create(Collection)} which contains the same
+	 * file locations in the same order.
+	 * 
+	 * @param files
+	 *            The file locations.
+	 * @return The created file collection.
+	 * @throws NullPointerException
+	 *             If the argument or any of the file locations is <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             If the path of a file location is not absolute.
+	 * @since saker.standard 0.8.5
+	 */
+	public static FileCollection createSorted(Collection<? extends FileLocation> files)
+			throws NullPointerException, IllegalArgumentException {
+		Objects.requireNonNull(files, "files");
+		return PathTrieFileCollection.create(files);
+	}
 }
@@ -70,6 +70,9 @@ class FileCollectionImpl implements FileCollection, Externalizable {
 			return true;
 		if (obj == null)
 			return false;
+		if (obj instanceof PathTrieFileCollection) {
+			return PathTrieFileCollection.isSameFileLocations(this, (PathTrieFileCollection) obj);
+		}
 		if (getClass() != obj.getClass())
 			return false;
 		FileCollectionImpl other = (FileCollectionImpl) obj;
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.api.file.location;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import saker.build.file.path.SakerPath;
+
+/**
+ * {@link FileCollection} that stores the paths of the file locations in a trie.
+ * <p>
+ * The file locations usually share a long common prefix, e.g. the path of a target directory. The trie stores each
+ * path name only once, so the collection is serialized in a fraction of the space that is required for the collection
+ * of individual file locations.
+ * <p>
+ * The file locations are created when the collection is iterated. The iteration order is the natural order of the
+ * paths. The collection is equal to a {@link FileCollectionImpl} that contains the same file locations in the same
+ * order.
+ */
+final class PathTrieFileCollection implements FileCollection, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private static final byte FLAG_EXECUTION = 1 << 0;
+	private static final byte FLAG_LOCAL = 1 << 1;
+
+	private static final Node[] EMPTY_NODE_ARRAY = {};
+
+	/**
+	 * Synthetic node that contains the root paths as its children.
+	 */
+	private Node root;
+
+	private transient int hashCode;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public PathTrieFileCollection() {
+	}
+
+	private PathTrieFileCollection(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Creates a new collection that contains the given file locations.
+	 * 
+	 * @param files
+	 *            The file locations.
+	 * @return The created collection.
+	 */
+	public static PathTrieFileCollection create(Collection<? extends FileLocation> files) {
+		NodeBuilder rootbuilder = new NodeBuilder(null, null);
+		for (FileLocation fl : files) {
+			fl.accept(new FileLocationVisitor() {
+				@Override
+				public void visit(ExecutionFileLocation loc) {
+					rootbuilder.add(loc.getPath()).flags |= FLAG_EXECUTION;
+				}
+
+				@Override
+				public void visit(LocalFileLocation loc) {
+					rootbuilder.add(loc.getLocalPath()).flags |= FLAG_LOCAL;
+				}
+			});
+		}
+		return new PathTrieFileCollection(rootbuilder.build());
+	}
+
+	@Override
+	public Iterator<FileLocation> iterator() {
+		return new TrieIterator(root);
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		Node[] roots = root.children;
+		out.writeInt(roots.length);
+		for (Node n : roots) {
+			out.writeObject(n.path);
+			writeNode(out, n);
+		}
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		int count = in.readInt();
+		Node[] roots = new Node[count];
+		for (int i = 0; i < count; i++) {
+			SakerPath path = (SakerPath) in.readObject();
+			roots[i] = readNode(in, path.getRoot(), path);
+		}
+		root = new Node(null, null, (byte) 0, roots);
+	}
+
+	private static void writeNode(ObjectOutput out, Node node) throws IOException {
+		out.writeByte(node.flags);
+		out.writeInt(node.children.length);
+		for (Node c : node.children) {
+			out.writeUTF(c.name);
+			writeNode(out, c);
+		}
+	}
+
+	private static Node readNode(ObjectInput in, String name, SakerPath path) throws IOException {
+		byte flags = in.readByte();
+		int count = in.readInt();
+		Node[] children = count == 0 ? EMPTY_NODE_ARRAY : new Node[count];
+		for (int i = 0; i < count; i++) {
+			children[i] = readNode(in, in.readUTF(), null);
+		}
+		return new Node(name, path, flags, children);
+	}
+
+	/**
+	 * Gets the hash code of the collection.
+	 * <p>
+	 * The hash code is the same as the hash code of a {@link FileCollectionImpl} with the same file locations.
+	 */
+	@Override
+	public int hashCode() {
+		int h = hashCode;
+		if (h == 0) {
+			h = 31 + getFileLocationsHashCode(this);
+			hashCode = h;
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (obj instanceof FileCollectionImpl) {
+			return isSameFileLocations(this, (FileCollectionImpl) obj);
+		}
+		if (getClass() != obj.getClass())
+			return false;
+		PathTrieFileCollection other = (PathTrieFileCollection) obj;
+		if (root == null) {
+			if (other.root != null)
+				return false;
+		} else if (!root.equals(other.root))
+			return false;
+		return true;
+	}
+
+	/**
+	 * Computes the hash code of the file locations the same way as {@link List#hashCode()}.
+	 */
+	private static int getFileLocationsHashCode(Iterable<FileLocation> files) {
+		int result = 1;
+		for (FileLocation fl : files) {
+			result = 31 * result + fl.hashCode();
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if the collections contain the same file locations in the same order.
+	 */
+	static boolean isSameFileLocations(Iterable<FileLocation> first, Iterable<FileLocation> second) {
+		Iterator<FileLocation> it1 = first.iterator();
+		Iterator<FileLocation> it2 = second.iterator();
+		while (it1.hasNext()) {
+			if (!it2.hasNext() || !it1.next().equals(it2.next())) {
+				return false;
+			}
+		}
+		return !it2.hasNext();
+	}
+
+	@Override
+	public String toString() {
+		List<FileLocation> files = new ArrayList<>();
+		for (FileLocation fl : this) {
+			files.add(fl);
+		}
+		return getClass().getSimpleName() + "[" + files + "]";
+	}
+
+	private static final class Node {
+		final String name;
+		/**
+		 * The path of the node if it is a root, <code>null</code> otherwise.
+		 */
+		final SakerPath path;
+		final byte flags;
+		final Node[] children;
+		private transient int hashCode;
+
+		public Node(String name, SakerPath path, byte flags, Node[] children) {
+			this.name = name;
+			this.path = path;
+			this.flags = flags;
+			this.children = children;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = hashCode;
+			if (h == 0) {
+				h = (name == null ? 0 : name.hashCode()) * 31 + flags;
+				h = h * 31 + Arrays.hashCode(children);
+				hashCode = h;
+			}
+			return h;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Node other = (Node) obj;
+			if (flags != other.flags)
+				return false;
+			if (name == null) {
+				if (other.name != null)
+					return false;
+			} else if (!name.equals(other.name))
+				return false;
+			if (path == null) {
+				if (other.path != null)
+					return false;
+			} else if (!path.equals(other.path))
+				return false;
+			if (!Arrays.equals(children, other.children))
+				return false;
+			return true;
+		}
+	}
+
+	private static final class NodeBuilder {
+		private final String name;
+		private final SakerPath path;
+		private final Map<String, NodeBuilder> children = new TreeMap<>();
+		byte flags;
+
+		public NodeBuilder(String name, SakerPath path) {
+			this.name = name;
+			this.path = path;
+		}
+
+		/**
+		 * Adds the given absolute path to the trie that this node is the synthetic root of.
+		 * 
+		 * @return The builder of the node for the path.
+		 */
+		public NodeBuilder add(SakerPath path) {
+			if (!path.isAbsolute()) {
+				throw new IllegalArgumentException("File location path is not absolute: " + path);
+			}
+			NodeBuilder node = children.computeIfAbsent(path.getRoot(), r -> new NodeBuilder(r, getRootPath(path)));
+			int count = path.getNameCount();
+			for (int i = 0; i < count; i++) {
+				node = node.children.computeIfAbsent(path.getName(i), n -> new NodeBuilder(n, null));
+			}
+			return node;
+		}
+
+		private static SakerPath getRootPath(SakerPath path) {
+			SakerPath result = path;
+			while (result.getNameCount() > 0) {
+				result = result.getParent();
+			}
+			return result;
+		}
+
+		public Node build() {
+			if (children.isEmpty()) {
+				return new Node(name, path, flags, EMPTY_NODE_ARRAY);
+			}
+			Node[] childnodes = new Node[children.size()];
+			int i = 0;
+			for (NodeBuilder c : children.values()) {
+				childnodes[i++] = c.build();
+			}
+			return new Node(name, path, flags, childnodes);
+		}
+	}
+
+	private static final class TrieIterator implements Iterator<FileLocation> {
+		private final Deque<Frame> stack = new ArrayDeque<>();
+		private final Deque<FileLocation> pending = new ArrayDeque<>(2);
+
+		public TrieIterator(Node root) {
+			stack.push(new Frame(root, null));
+			moveToNext();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !pending.isEmpty();
+		}
+
+		@Override
+		public FileLocation next() {
+			FileLocation result = pending.pollFirst();
+			if (result == null) {
+				throw new NoSuchElementException();
+			}
+			if (pending.isEmpty()) {
+				moveToNext();
+			}
+			return result;
+		}
+
+		private void moveToNext() {
+			while (pending.isEmpty()) {
+				Frame frame = stack.peek();
+				if (frame == null) {
+					return;
+				}
+				if (frame.childIndex >= frame.node.children.length) {
+					stack.pop();
+					continue;
+				}
+				Node child = frame.node.children[frame.childIndex++];
+				SakerPath childpath = frame.path == null ? child.path : frame.path.resolve(child.name);
+				if ((child.flags & FLAG_EXECUTION) != 0) {
+					pending.add(ExecutionFileLocation.create(childpath));
+				}
+				if ((child.flags & FLAG_LOCAL) != 0) {
+					pending.add(LocalFileLocation.create(childpath));
+				}
+				stack.push(new Frame(child, childpath));
+			}
+		}
+	}
+
+	private static final class Frame {
+		final Node node;
+		final SakerPath path;
+		int childIndex;
+
+		public Frame(Node node, SakerPath path) {
+			this.node = node;
+			this.path = path;
+		}
+	}
+}
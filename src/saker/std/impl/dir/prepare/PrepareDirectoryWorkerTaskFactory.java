@@ -20,23 +20,34 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import saker.build.file.DelegateSakerFile;
+import saker.build.file.DirectoryVisitPredicate;
 import saker.build.file.SakerDirectory;
 import saker.build.file.SakerFile;
 import saker.build.file.content.ContentDescriptor;
 import saker.build.file.content.DirectoryContentDescriptor;
+import saker.build.file.path.ProviderHolderPathKey;
 import saker.build.file.path.SakerPath;
+import saker.build.file.provider.FileEntry;
 import saker.build.file.provider.LocalFileProvider;
 import saker.build.file.provider.SakerPathFiles;
 import saker.build.runtime.execution.ExecutionContext;
@@ -48,21 +59,31 @@ import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
 import saker.build.task.utils.dependencies.RecursiveFileCollectionStrategy;
 import saker.build.thirdparty.saker.util.ImmutableUtils;
 import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.thirdparty.saker.util.function.ThrowingConsumer;
 import saker.build.thirdparty.saker.util.io.SerialUtils;
+import saker.build.thirdparty.saker.util.thread.ThreadUtils;
 import saker.build.trace.BuildTrace;
 import saker.std.api.dir.prepare.PrepareDirectoryWorkerTaskOutput;
 import saker.std.api.file.location.ExecutionFileLocation;
 import saker.std.api.file.location.FileLocation;
 import saker.std.api.file.location.FileLocationVisitor;
 import saker.std.api.file.location.LocalFileLocation;
-import saker.std.api.util.SakerStandardUtils;
+import saker.std.impl.file.copy.CopyMode;
+import saker.std.impl.file.copy.LocalFileLinker;
+import saker.std.impl.file.property.LocalFilesFingerprintExecutionProperty;
+import saker.std.impl.util.IOComputationTokens;
 
 public class PrepareDirectoryWorkerTaskFactory implements TaskFactory<PrepareDirectoryWorkerTaskOutput>,
 		Task<PrepareDirectoryWorkerTaskOutput>, Externalizable {
 	private static final long serialVersionUID = 1L;
 
+	private static final String THREAD_NAME_PREFIX = "std.dir.prepare-";
+
 	private NavigableMap<SakerPath, FileLocation> inputs;
 	private boolean clearDirectory;
+	private CopyMode materialization = CopyMode.COPY;
+
+	private transient volatile int computationTokenCount = -1;
 
 	/**
 	 * For {@link Externalizable}.
@@ -75,9 +96,51 @@ public class PrepareDirectoryWorkerTaskFactory implements TaskFactory<PrepareDir
 		this.clearDirectory = clearDirectory;
 	}
 
+	/**
+	 * Sets how the input files should be materialized in the output directory.
+	 * <p>
+	 * The files are linked if the output directory is on the local file system, and the input file is present on the
+	 * local file system as well. Otherwise the files are copied.
+	 * 
+	 * @param materialization
+	 *            The copy mode to use for the input files.
+	 */
+	public void setMaterialization(CopyMode materialization) {
+		this.materialization = materialization == null ? CopyMode.COPY : materialization;
+	}
+
+	/**
+	 * Estimates the cost of the preparation based on the number of inputs and the sizes of the local input files.
+	 */
 	@Override
 	public int getRequestedComputationTokenCount() {
-		return 1;
+		int result = computationTokenCount;
+		if (result < 0) {
+			result = estimateComputationTokenCount();
+			computationTokenCount = result;
+		}
+		return result;
+	}
+
+	private int estimateComputationTokenCount() {
+		long[] bytecount = { 0 };
+		for (FileLocation input : inputs.values()) {
+			input.accept(new FileLocationVisitor() {
+				@Override
+				public void visit(LocalFileLocation loc) {
+					FileEntry attrs = IOComputationTokens.getLocalFileAttributesOrNull(loc.getLocalPath());
+					if (attrs != null && !attrs.isDirectory()) {
+						bytecount[0] += attrs.getSize();
+					}
+				}
+
+				@Override
+				public void visit(ExecutionFileLocation loc) {
+					//the size of execution files is not known without resolving them
+				}
+			});
+		}
+		return IOComputationTokens.getComputationTokenCount(inputs.size(), bytecount[0], 1);
 	}
 
 	@Override
@@ -100,33 +163,24 @@ public class PrepareDirectoryWorkerTaskFactory implements TaskFactory<PrepareDir
 				.resolveDirectoryAtPathCreate(SakerPathFiles.requireBuildDirectory(taskcontext), outpath);
 
 		SakerPath outputdirpath = outputdir.getSakerPath();
+		Path outputdirlocalpath = taskcontext.getExecutionContext().getPathConfiguration().toLocalPath(outputdirpath);
+		OutputFileLinker outputlinker = null;
+		if (outputdirlocalpath != null) {
+			outputlinker = new OutputFileLinker(taskcontext, materialization, outputdirpath,
+					SakerPath.valueOf(outputdirlocalpath));
+		}
 
+		NavigableMap<SakerPath, ? extends SakerFile> prevoutputdeps;
 		if (clearDirectory) {
 			outputdir.clear();
+			prevoutputdeps = Collections.emptyNavigableMap();
 		} else {
-			NavigableMap<SakerPath, ? extends SakerFile> prevoutputdeps = SakerPathFiles.getPathSubMapDirectoryChildren(
+			//the previous outputs are kept if they're unchanged, and the stale ones are removed after the
+			//new outputs have been added
+			prevoutputdeps = SakerPathFiles.getPathSubMapDirectoryChildren(
 					taskcontext.getPreviousOutputDependencies(null), outputdirpath, false);
-			if (!ObjectUtils.isNullOrEmpty(prevoutputdeps)) {
-				//remove previous outputs that are under the output directory
-				List<SakerDirectory> dirs = new ArrayList<>();
-				for (Entry<SakerPath, ? extends SakerFile> entry : prevoutputdeps.entrySet()) {
-					SakerFile f = entry.getValue();
-					if (f == null) {
-						//already removed
-						continue;
-					}
-					if (f instanceof SakerDirectory) {
-						//we may need to keep the directory if there's any files placed in it.
-						dirs.add((SakerDirectory) f);
-					} else {
-						f.remove();
-					}
-				}
-				for (SakerDirectory d : dirs) {
-					if (d.isEmpty()) {
-						d.remove();
-					} // else keep it as some other agent placed a file in it
-				}
+			if (prevoutputdeps == null) {
+				prevoutputdeps = Collections.emptyNavigableMap();
 			}
 		}
 
@@ -140,80 +194,66 @@ public class PrepareDirectoryWorkerTaskFactory implements TaskFactory<PrepareDir
 
 		UUID taskuuid = UUID.randomUUID();
 
-		//TODO perform iteration more efficiently, without too many path resolutions
+		//report the attributes of all local input files using a single execution property
+		NavigableMap<SakerPath, SakerPath> localinputpaths = new TreeMap<>();
 		for (Entry<SakerPath, FileLocation> entry : inputs.entrySet()) {
-			SakerPath entrypath = entry.getKey();
-			String entryfilename = entrypath.getFileName();
-			SakerDirectory parentdir = outputdir;
-			{
-				SakerPath currentpath = outputdirpath;
-				ListIterator<String> it = entrypath.nameIterator();
-				while (true) {
-					String n = it.next();
-					if (!it.hasNext()) {
-						break;
-					}
-					parentdir = parentdir.getDirectoryCreate(n);
-					currentpath = currentpath.resolve(n);
-					ContentDescriptor prev = outputfilecontents.putIfAbsent(currentpath,
-							DirectoryContentDescriptor.INSTANCE);
-					if (prev != null && !DirectoryContentDescriptor.INSTANCE.equals(prev)) {
-						throw new IllegalArgumentException("Conflicting output files at: " + currentpath
-								+ " with contents: " + DirectoryContentDescriptor.INSTANCE + " and " + prev);
-					}
-				}
-			}
-			SakerDirectory fparentdir = parentdir;
-			SakerPath entryoutpath = outputdirpath.resolve(entrypath);
-			outputpaths.add(entryoutpath);
 			entry.getValue().accept(new FileLocationVisitor() {
 				@Override
 				public void visit(LocalFileLocation loc) {
-					SakerPath localpath = loc.getLocalPath();
-					ContentDescriptor cd = taskutils.getReportExecutionDependency(
-							SakerStandardUtils.createLocalFileContentDescriptorExecutionProperty(localpath, taskuuid));
-					if (cd == null) {
-						throw ObjectUtils.sneakyThrow(new NoSuchFileException(localpath.toString()));
-					}
-					if (cd instanceof DirectoryContentDescriptor) {
-						fparentdir.getDirectoryCreate(entryfilename);
-					} else {
-						try {
-							SakerFile newfile = taskutils.createProviderPathFile(entryfilename,
-									LocalFileProvider.getInstance().getPathKey(localpath));
-							if (newfile instanceof SakerDirectory) {
-								//should not happen, but better check this
-								throw new ConcurrentModificationException(
-										"File hierarchy was concurrently modified at " + loc);
-							}
-							fparentdir.add(newfile);
-							outputfilepaths.add(entryoutpath);
-						} catch (Exception e) {
-							throw ObjectUtils.sneakyThrow(e);
-						}
-					}
-					outputfilecontents.put(entryoutpath, cd);
+					localinputpaths.put(entry.getKey(), loc.getLocalPath());
 				}
 
 				@Override
 				public void visit(ExecutionFileLocation loc) {
-					SakerPath path = loc.getPath();
-					SakerFile f = taskutils.resolveAtPath(path);
-					if (f == null) {
-						throw ObjectUtils.sneakyThrow(new NoSuchFileException(path.toString()));
-					}
-					ContentDescriptor cd = f.getContentDescriptor();
-					inputfilecontents.put(path, cd);
-					if (f instanceof SakerDirectory) {
-						fparentdir.getDirectoryCreate(entryfilename);
-					} else {
-						outputfilepaths.add(entryoutpath);
-						fparentdir.add(new DelegateSakerFile(entryfilename, f));
-					}
-					outputfilecontents.put(entryoutpath, cd);
 				}
 			});
 		}
+		NavigableMap<SakerPath, FileEntry> localinputentries;
+		if (localinputpaths.isEmpty()) {
+			localinputentries = Collections.emptyNavigableMap();
+		} else {
+			localinputentries = taskutils.getReportExecutionDependency(
+					new LocalFilesFingerprintExecutionProperty(localinputpaths, taskuuid)).getEntries();
+		}
+		Map<SakerPath, SakerFile> localinputfiles = createLocalInputFiles(taskutils, outputlinker, localinputpaths,
+				localinputentries);
+
+		//the directories are created once for each trie node, instead of resolving the parent for each input
+		InputTrieNode roottrie = InputTrieNode.create(inputs);
+		roottrie.directory = outputdir;
+		roottrie.outputPath = outputdirpath;
+		Deque<InputTrieNode> trieworklist = new ArrayDeque<>();
+		trieworklist.add(roottrie);
+		for (InputTrieNode node; (node = trieworklist.pollFirst()) != null;) {
+			SakerDirectory parentdir = node.directory;
+			for (Entry<String, InputTrieNode> childentry : node.children.entrySet()) {
+				String entryfilename = childentry.getKey();
+				InputTrieNode child = childentry.getValue();
+				SakerPath entryoutpath = node.outputPath.resolve(entryfilename);
+				child.outputPath = entryoutpath;
+				if (child.location != null) {
+					outputpaths.add(entryoutpath);
+					addInputEntry(taskutils, outputlinker, child, parentdir, entryfilename, entryoutpath,
+							localinputentries, localinputfiles, prevoutputdeps, inputfilecontents, outputfilecontents,
+							outputfilepaths);
+				}
+				if (child.children.isEmpty()) {
+					continue;
+				}
+				if (child.location == null) {
+					child.directory = parentdir.getDirectoryCreate(entryfilename);
+					outputfilecontents.put(entryoutpath, DirectoryContentDescriptor.INSTANCE);
+				} else if (child.directory == null) {
+					throw new IllegalArgumentException("Conflicting output files at: " + entryoutpath
+							+ " with contents: " + DirectoryContentDescriptor.INSTANCE + " and "
+							+ outputfilecontents.get(entryoutpath));
+				}
+				trieworklist.add(child);
+			}
+			//the children are no longer needed
+			node.children = null;
+		}
+		removeStalePreviousOutputs(prevoutputdeps, outputfilecontents);
 		taskutils.reportInputFileDependency(null, inputfilecontents);
 		if (clearDirectory) {
 			//use the input dependency reporting to ensure that we re-run if any files are added to the output directory 
@@ -222,7 +262,8 @@ public class PrepareDirectoryWorkerTaskFactory implements TaskFactory<PrepareDir
 		} else {
 			taskutils.reportOutputFileDependency(null, outputfilecontents);
 		}
-		outputdir.synchronize();
+		synchronizeOutputDirectory(outputdir, outputdirpath,
+				outputlinker == null ? Collections.emptySet() : outputlinker.linkedOutputPaths);
 
 		PrepareDirectoryWorkerTaskOutputImpl result = new PrepareDirectoryWorkerTaskOutputImpl(outputdirpath,
 				ImmutableUtils.makeImmutableNavigableSet(outputpaths),
@@ -231,6 +272,209 @@ public class PrepareDirectoryWorkerTaskFactory implements TaskFactory<PrepareDir
 		return result;
 	}
 
+	/**
+	 * Adds the file or directory for the input of the trie node to the output directory.
+	 * <p>
+	 * If the input is a directory, it is set as the directory of the trie node.
+	 */
+	private static void addInputEntry(TaskExecutionUtilities taskutils, OutputFileLinker outputlinker,
+			InputTrieNode node, SakerDirectory parentdir, String entryfilename, SakerPath entryoutpath,
+			NavigableMap<SakerPath, FileEntry> localinputentries, Map<SakerPath, SakerFile> localinputfiles,
+			NavigableMap<SakerPath, ? extends SakerFile> prevoutputdeps,
+			NavigableMap<SakerPath, ContentDescriptor> inputfilecontents,
+			NavigableMap<SakerPath, ContentDescriptor> outputfilecontents, NavigableSet<SakerPath> outputfilepaths) {
+		SakerPath entrypath = node.entryPath;
+		node.location.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(LocalFileLocation loc) {
+				SakerPath localpath = loc.getLocalPath();
+				FileEntry attrs = localinputentries.get(entrypath);
+				if (attrs == null) {
+					throw ObjectUtils.sneakyThrow(new NoSuchFileException(localpath.toString()));
+				}
+				ContentDescriptor cd;
+				if (attrs.isDirectory()) {
+					node.directory = parentdir.getDirectoryCreate(entryfilename);
+					cd = DirectoryContentDescriptor.INSTANCE;
+				} else {
+					SakerFile newfile = localinputfiles.get(entrypath);
+					if (newfile instanceof SakerDirectory) {
+						//should not happen, but better check this
+						throw new ConcurrentModificationException(
+								"File hierarchy was concurrently modified at " + loc);
+					}
+					cd = newfile.getContentDescriptor();
+					if (!isUnchangedPreviousOutput(prevoutputdeps, entryoutpath, parentdir, cd)) {
+						if (outputlinker != null && !outputlinker.isLinked(entryoutpath)) {
+							outputlinker.unlink(entrypath);
+						}
+						parentdir.add(newfile);
+					}
+					outputfilepaths.add(entryoutpath);
+				}
+				outputfilecontents.put(entryoutpath, cd);
+			}
+
+			@Override
+			public void visit(ExecutionFileLocation loc) {
+				SakerPath path = loc.getPath();
+				SakerFile f = taskutils.resolveAtPath(path);
+				if (f == null) {
+					throw ObjectUtils.sneakyThrow(new NoSuchFileException(path.toString()));
+				}
+				ContentDescriptor cd = f.getContentDescriptor();
+				inputfilecontents.put(path, cd);
+				if (f instanceof SakerDirectory) {
+					node.directory = parentdir.getDirectoryCreate(entryfilename);
+				} else {
+					outputfilepaths.add(entryoutpath);
+					SakerFile linkedfile = null;
+					if (outputlinker != null) {
+						linkedfile = outputlinker.linkExecutionFile(f, entrypath);
+					}
+					if (linkedfile != null) {
+						cd = linkedfile.getContentDescriptor();
+						if (!isUnchangedPreviousOutput(prevoutputdeps, entryoutpath, parentdir, cd)) {
+							parentdir.add(linkedfile);
+						}
+					} else if (!isUnchangedPreviousOutput(prevoutputdeps, entryoutpath, parentdir, cd)) {
+						if (outputlinker != null) {
+							outputlinker.unlink(entrypath);
+						}
+						parentdir.add(new DelegateSakerFile(entryfilename, f));
+					}
+				}
+				outputfilecontents.put(entryoutpath, cd);
+			}
+		});
+	}
+
+	/**
+	 * Checks if the previous output file at the given path is still present in the output hierarchy, and has the
+	 * same contents as the new output file.
+	 * <p>
+	 * If so, the previous output file is kept instead of adding a new file, so the file is not rewritten during
+	 * synchronization.
+	 */
+	private static boolean isUnchangedPreviousOutput(NavigableMap<SakerPath, ? extends SakerFile> prevoutputdeps,
+			SakerPath entryoutpath, SakerDirectory parentdir, ContentDescriptor cd) {
+		SakerFile prev = prevoutputdeps.get(entryoutpath);
+		if (prev == null || prev instanceof SakerDirectory) {
+			return false;
+		}
+		if (parentdir.get(prev.getName()) != prev) {
+			//replaced by someone else
+			return false;
+		}
+		return cd.equals(prev.getContentDescriptor());
+	}
+
+	/**
+	 * Removes the previous output files that are no longer part of the outputs.
+	 */
+	private static void removeStalePreviousOutputs(NavigableMap<SakerPath, ? extends SakerFile> prevoutputdeps,
+			NavigableMap<SakerPath, ContentDescriptor> outputfilecontents) {
+		if (prevoutputdeps.isEmpty()) {
+			return;
+		}
+		List<SakerDirectory> dirs = new ArrayList<>();
+		for (Entry<SakerPath, ? extends SakerFile> entry : prevoutputdeps.entrySet()) {
+			if (outputfilecontents.containsKey(entry.getKey())) {
+				//still an output, either kept or overwritten
+				continue;
+			}
+			SakerFile f = entry.getValue();
+			if (f == null) {
+				//already removed
+				continue;
+			}
+			if (f instanceof SakerDirectory) {
+				//we may need to keep the directory if there's any files placed in it.
+				dirs.add((SakerDirectory) f);
+			} else {
+				f.remove();
+			}
+		}
+		//remove the subdirectories first, so their parents may become empty
+		for (ListIterator<SakerDirectory> it = dirs.listIterator(dirs.size()); it.hasPrevious();) {
+			SakerDirectory d = it.previous();
+			if (d.isEmpty()) {
+				d.remove();
+			} // else keep it as some other agent placed a file in it
+		}
+	}
+
+	/**
+	 * Creates the files for the local input files concurrently.
+	 * <p>
+	 * The content descriptors of the files are also computed concurrently, so they're available when the output
+	 * dependencies are reported.
+	 */
+	private Map<SakerPath, SakerFile> createLocalInputFiles(TaskExecutionUtilities taskutils,
+			OutputFileLinker outputlinker, NavigableMap<SakerPath, SakerPath> localinputpaths,
+			NavigableMap<SakerPath, FileEntry> localinputentries) throws Exception {
+		List<Entry<SakerPath, SakerPath>> files = new ArrayList<>();
+		for (Entry<SakerPath, SakerPath> entry : localinputpaths.entrySet()) {
+			FileEntry attrs = localinputentries.get(entry.getKey());
+			if (attrs == null || attrs.isDirectory()) {
+				//handled when the output hierarchy is built
+				continue;
+			}
+			files.add(entry);
+		}
+		Map<SakerPath, SakerFile> result = new ConcurrentHashMap<>();
+		runParallel(files, entry -> {
+			SakerPath entrypath = entry.getKey();
+			SakerFile newfile = null;
+			if (outputlinker != null) {
+				newfile = outputlinker.link(entry.getValue(), entrypath);
+			}
+			if (newfile == null) {
+				newfile = taskutils.createProviderPathFile(entrypath.getFileName(),
+						LocalFileProvider.getInstance().getPathKey(entry.getValue()));
+			}
+			newfile.getContentDescriptor();
+			result.put(entrypath, newfile);
+		});
+		return result;
+	}
+
+	/**
+	 * Synchronizes the output directory by creating the directory hierarchy first, and then writing the files
+	 * concurrently.
+	 * <p>
+	 * The files at the linked output paths are already present on the disk, so they are not synchronized.
+	 */
+	private void synchronizeOutputDirectory(SakerDirectory outputdir, SakerPath outputdirpath,
+			Set<SakerPath> linkedoutputpaths) throws Exception {
+		outputdir.synchronize(DirectoriesDirectoryVisitPredicate.INSTANCE);
+
+		List<SakerFile> files = new ArrayList<>();
+		for (Entry<SakerPath, SakerFile> entry : outputdir
+				.getFilesRecursiveByPath(outputdirpath, DirectoryVisitPredicate.everything()).entrySet()) {
+			SakerFile f = entry.getValue();
+			if (!(f instanceof SakerDirectory) && !linkedoutputpaths.contains(entry.getKey())) {
+				files.add(f);
+			}
+		}
+		runParallel(files, SakerFile::synchronize);
+	}
+
+	/**
+	 * Runs the worker for the items using as many threads as the number of requested computation tokens.
+	 */
+	private <T> void runParallel(Collection<T> items, ThrowingConsumer<? super T> worker) throws Exception {
+		int threadcount = Math.min(getRequestedComputationTokenCount(), items.size());
+		if (threadcount <= 1) {
+			for (T item : items) {
+				worker.accept(item);
+			}
+		} else {
+			ThreadUtils.parallelRunner().setThreadCount(threadcount).setNamePrefix(THREAD_NAME_PREFIX)
+					.runItems(items, worker);
+		}
+	}
+
 	@Override
 	public Task<? extends PrepareDirectoryWorkerTaskOutput> createTask(ExecutionContext executioncontext) {
 		return this;
@@ -240,12 +484,14 @@ public class PrepareDirectoryWorkerTaskFactory implements TaskFactory<PrepareDir
 	public void writeExternal(ObjectOutput out) throws IOException {
 		SerialUtils.writeExternalMap(out, inputs);
 		out.writeBoolean(clearDirectory);
+		out.writeObject(materialization);
 	}
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		inputs = SerialUtils.readExternalSortedImmutableNavigableMap(in);
 		clearDirectory = in.readBoolean();
+		materialization = (CopyMode) in.readObject();
 	}
 
 	@Override
@@ -253,6 +499,7 @@ public class PrepareDirectoryWorkerTaskFactory implements TaskFactory<PrepareDir
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((inputs == null) ? 0 : inputs.hashCode());
+		result = prime * result + ((materialization == null) ? 0 : materialization.hashCode());
 		return result;
 	}
 
@@ -272,7 +519,192 @@ public class PrepareDirectoryWorkerTaskFactory implements TaskFactory<PrepareDir
 				return false;
 		} else if (!inputs.equals(other.inputs))
 			return false;
+		if (materialization != other.materialization)
+			return false;
 		return true;
 	}
 
+	/**
+	 * Visits the directories but not the files during synchronization.
+	 * <p>
+	 * Used to create the output directory hierarchy before the files are written concurrently.
+	 */
+	private static final class DirectoriesDirectoryVisitPredicate implements DirectoryVisitPredicate, Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		public static final DirectoriesDirectoryVisitPredicate INSTANCE = new DirectoriesDirectoryVisitPredicate();
+
+		/**
+		 * For {@link Externalizable}.
+		 */
+		public DirectoriesDirectoryVisitPredicate() {
+		}
+
+		@Override
+		public boolean visitFile(String name, SakerFile file) {
+			return false;
+		}
+
+		@Override
+		public boolean visitDirectory(String name, SakerDirectory directory) {
+			return true;
+		}
+
+		@Override
+		public DirectoryVisitPredicate directoryVisitor(String name, SakerDirectory directory) {
+			return this;
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		}
+
+		@Override
+		public int hashCode() {
+			return getClass().getName().hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return ObjectUtils.isSameClass(this, obj);
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "[]";
+		}
+	}
+
+	/**
+	 * Links the input files to the output directory on the local file system based on the materialization mode.
+	 * <p>
+	 * The linked files are represented by files that are backed by the created links, so the synchronization doesn't
+	 * write the contents through them.
+	 */
+	private static final class OutputFileLinker {
+		final TaskContext taskContext;
+		final LocalFileLinker linker;
+		final SakerPath outputDirectoryPath;
+		final SakerPath outputDirectoryLocalPath;
+		/**
+		 * The output paths of the files that were linked.
+		 */
+		final Set<SakerPath> linkedOutputPaths = ConcurrentHashMap.newKeySet();
+
+		public OutputFileLinker(TaskContext taskcontext, CopyMode mode, SakerPath outputdirpath,
+				SakerPath outputdirlocalpath) {
+			this.taskContext = taskcontext;
+			this.linker = new LocalFileLinker(taskcontext, mode);
+			this.outputDirectoryPath = outputdirpath;
+			this.outputDirectoryLocalPath = outputdirlocalpath;
+		}
+
+		/**
+		 * Links the local file to the output path of the entry.
+		 * 
+		 * @return The file that represents the link, or <code>null</code> if the file wasn't linked.
+		 */
+		public SakerFile link(SakerPath sourcelocalpath, SakerPath entrypath) throws IOException {
+			if (!linker.isLinking()) {
+				return null;
+			}
+			SakerPath targetlocalpath = outputDirectoryLocalPath.resolve(entrypath);
+			if (!linker.link(sourcelocalpath, targetlocalpath)) {
+				return null;
+			}
+			ProviderHolderPathKey targetpathkey = LocalFileProvider.getInstance().getPathKey(targetlocalpath);
+			taskContext.invalidateGetContentDescriptor(targetpathkey);
+			linkedOutputPaths.add(outputDirectoryPath.resolve(entrypath));
+			return taskContext.getTaskUtilities().createProviderPathFile(entrypath.getFileName(), targetpathkey);
+		}
+
+		/**
+		 * Links the execution file to the output path of the entry if it is present on the local file system.
+		 * 
+		 * @return The file that represents the link, or <code>null</code> if the file wasn't linked.
+		 */
+		public SakerFile linkExecutionFile(SakerFile file, SakerPath entrypath) {
+			if (!linker.isLinking()) {
+				return null;
+			}
+			Path filelocalpath = taskContext.getExecutionContext().getPathConfiguration()
+					.toLocalPath(file.getSakerPath());
+			if (filelocalpath == null) {
+				return null;
+			}
+			try {
+				//make sure the contents are present at the link target
+				file.synchronize();
+				return link(SakerPath.valueOf(filelocalpath), entrypath);
+			} catch (IOException e) {
+				throw ObjectUtils.sneakyThrow(e);
+			}
+		}
+
+		public boolean isLinked(SakerPath entryoutpath) {
+			return linkedOutputPaths.contains(entryoutpath);
+		}
+
+		/**
+		 * Deletes the previous link at the output path of the entry, so its contents can be written safely.
+		 */
+		public void unlink(SakerPath entrypath) {
+			try {
+				linker.unlink(outputDirectoryLocalPath.resolve(entrypath));
+			} catch (IOException e) {
+				throw ObjectUtils.sneakyThrow(e);
+			}
+		}
+	}
+
+	/**
+	 * Node of the trie that is built from the relative paths of the inputs.
+	 */
+	private static final class InputTrieNode {
+		/**
+		 * The child nodes mapped to their names.
+		 */
+		NavigableMap<String, InputTrieNode> children = new TreeMap<>();
+		/**
+		 * The relative path of the input, or <code>null</code> if there's no input for this node.
+		 */
+		SakerPath entryPath;
+		/**
+		 * The input location, or <code>null</code> if there's no input for this node.
+		 */
+		FileLocation location;
+
+		/**
+		 * The output path, set when the node is visited.
+		 */
+		SakerPath outputPath;
+		/**
+		 * The output directory, set if the node is visited and it is a directory.
+		 */
+		SakerDirectory directory;
+
+		public static InputTrieNode create(NavigableMap<SakerPath, FileLocation> inputs) {
+			InputTrieNode root = new InputTrieNode();
+			for (Entry<SakerPath, FileLocation> entry : inputs.entrySet()) {
+				SakerPath entrypath = entry.getKey();
+				InputTrieNode node = root;
+				for (String n : entrypath.getNameList()) {
+					InputTrieNode child = node.children.get(n);
+					if (child == null) {
+						child = new InputTrieNode();
+						node.children.put(n, child);
+					}
+					node = child;
+				}
+				node.entryPath = entrypath;
+				node.location = entry.getValue();
+			}
+			return root;
+		}
+	}
+
 }
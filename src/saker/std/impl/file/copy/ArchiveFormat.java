@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.copy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Specifies the format of the archive that the copied files are written to.
+ */
+public enum ArchiveFormat {
+	/**
+	 * The files are written to a ZIP archive.
+	 */
+	ZIP {
+		@Override
+		public ZipOutputStream createOutputStream(OutputStream os) throws IOException {
+			return new ZipOutputStream(os);
+		}
+	},
+	/**
+	 * The files are written to a JAR archive.
+	 * <p>
+	 * If the archive contains a manifest, it is written before the other entries.
+	 */
+	JAR {
+		@Override
+		public ZipOutputStream createOutputStream(OutputStream os) throws IOException {
+			return new JarOutputStream(os);
+		}
+	};
+
+	/**
+	 * Creates a stream that writes the archive entries in this format to the given output.
+	 * 
+	 * @param os
+	 *            The output stream to write the archive to.
+	 * @return The archive output stream.
+	 * @throws IOException
+	 *             If the stream creation fails.
+	 */
+	public abstract ZipOutputStream createOutputStream(OutputStream os) throws IOException;
+
+	/**
+	 * Gets the archive format for the given task option value.
+	 * <p>
+	 * The argument is compared to the enumeration names in a case insensitive manner.
+	 * 
+	 * @param option
+	 *            The option value.
+	 * @return The archive format or <code>null</code> if the argument doesn't denote one.
+	 */
+	public static ArchiveFormat fromOption(String option) {
+		if (option == null) {
+			return null;
+		}
+		try {
+			return valueOf(option.toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
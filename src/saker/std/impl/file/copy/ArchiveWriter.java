@@ -0,0 +1,404 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.copy;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import saker.build.file.SakerDirectory;
+import saker.build.file.SakerFile;
+import saker.build.file.SakerFileBase;
+import saker.build.file.content.ContentDescriptor;
+import saker.build.file.content.DirectoryContentDescriptor;
+import saker.build.file.content.SerializableContentDescriptor;
+import saker.build.file.path.SakerPath;
+import saker.build.file.path.WildcardPath;
+import saker.build.file.provider.FileEntry;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.file.provider.SakerFileProvider;
+import saker.build.task.TaskContext;
+import saker.build.task.TaskExecutionUtilities;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.std.api.file.location.ExecutionFileLocation;
+import saker.std.api.file.location.FileLocation;
+import saker.std.api.file.location.FileLocationVisitor;
+import saker.std.api.file.location.LocalFileLocation;
+import saker.std.impl.file.property.LocalDirectoryFingerprintExecutionProperty;
+import saker.std.impl.file.property.LocalFileContentDescriptorExecutionProperty;
+import saker.std.impl.file.property.LocalFilesFingerprint;
+
+/**
+ * Writes the copy sources as the entries of an archive.
+ * <p>
+ * The entries are collected and sorted by their paths before any of them is written, so the archive is the same
+ * regardless of the order in which the file systems list the directories. The modification times of the entries are
+ * set to a fixed value for the same reason.
+ * <p>
+ * The contents of the source files are streamed into the archive, they are not copied to a staging directory first.
+ * If the target is in the execution file hierarchy, the archive is written by the added file when it is synchronized,
+ * and its content descriptor is derived from the contents of the entries.
+ */
+final class ArchiveWriter {
+	private static final SakerPath MANIFEST_DIRECTORY_PATH = SakerPath.valueOf("META-INF");
+	private static final SakerPath MANIFEST_ENTRY_PATH = MANIFEST_DIRECTORY_PATH.resolve("MANIFEST.MF");
+	/**
+	 * The modification time of the entries.
+	 * <p>
+	 * The beginning of the DOS time range with an additional month, so the time zone offset of the entry time stays in
+	 * the range.
+	 */
+	private static final long ENTRY_TIME = new GregorianCalendar(1980, Calendar.FEBRUARY, 1, 0, 0, 0)
+			.getTimeInMillis();
+
+	private final TaskContext taskcontext;
+	private final FileLocation targetLocation;
+	private final NavigableSet<WildcardPath> wildcards;
+	private final NavigableSet<WildcardPath> excludes;
+	private final CopyStatistics statistics;
+
+	/**
+	 * Maps the entry paths to their contents. Directory entries have <code>null</code> contents.
+	 */
+	private final NavigableMap<SakerPath, EntryContents> entries = new TreeMap<>();
+	/**
+	 * Maps the entry paths to the objects that identify their contents.
+	 * <p>
+	 * These are the content descriptors or the attributes of the source files, and are used to create the content
+	 * descriptor of the archive.
+	 */
+	private final NavigableMap<SakerPath, Object> entryContentKeys = new TreeMap<>();
+
+	public ArchiveWriter(TaskContext taskcontext, FileLocation targetlocation, NavigableSet<WildcardPath> wildcards,
+			NavigableSet<WildcardPath> excludes, CopyStatistics statistics) {
+		this.taskcontext = taskcontext;
+		this.targetLocation = targetlocation;
+		this.wildcards = wildcards;
+		this.excludes = excludes;
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Adds a single copy source to the archive.
+	 * <p>
+	 * If the source is a directory, its children are added to the root of the archive, otherwise the file is added
+	 * with its file name.
+	 * 
+	 * @param source
+	 *            The source location.
+	 */
+	public void addSource(FileLocation source) {
+		source.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(ExecutionFileLocation loc) {
+				addExecutionSource(loc.getPath(), loc.getPath().getFileName(), true);
+			}
+
+			@Override
+			public void visit(LocalFileLocation loc) {
+				addLocalSource(loc.getLocalPath(), loc.getLocalPath().getFileName(), true);
+			}
+		});
+	}
+
+	/**
+	 * Adds a source of a batch copy to the archive.
+	 * <p>
+	 * The source is added with its file name. If it is a directory, its children are added under that entry.
+	 * 
+	 * @param source
+	 *            The source location.
+	 * @param names
+	 *            The file names of the already added batch sources.
+	 */
+	public void addBatchSource(FileLocation source, Set<String> names) {
+		source.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(ExecutionFileLocation loc) {
+				String name = CopyFileWorkerTaskFactory.getBatchSourceFileName(loc.getPath(), names);
+				addExecutionSource(loc.getPath(), name, false);
+			}
+
+			@Override
+			public void visit(LocalFileLocation loc) {
+				String name = CopyFileWorkerTaskFactory.getBatchSourceFileName(loc.getLocalPath(), names);
+				addLocalSource(loc.getLocalPath(), name, false);
+			}
+		});
+	}
+
+	/**
+	 * Writes the added entries to the archive at the target location.
+	 * 
+	 * @param format
+	 *            The archive format.
+	 */
+	public void write(ArchiveFormat format) {
+		TaskExecutionUtilities taskutils = taskcontext.getTaskUtilities();
+		statistics.filesVisited(entries.size());
+		targetLocation.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(ExecutionFileLocation loc) {
+				SakerPath path = loc.getPath();
+				SakerDirectory parentdir = taskutils.resolveDirectoryAtPathCreateIfAbsent(path.getParent());
+				if (parentdir == null) {
+					throw new RuntimeException("Failed to create copy target directory at: " + path.getParent());
+				}
+				try {
+					long transferstart = System.nanoTime();
+					ArchiveSakerFile outfile = new ArchiveSakerFile(path.getFileName(), format, entries,
+							entryContentKeys, statistics);
+					if (parentdir.addOverwriteIfNotDirectory(outfile) != null) {
+						throw new RuntimeException("Failed to write archive to target path: " + path
+								+ " (a directory with the same name is already present)");
+					}
+					outfile.synchronize();
+					statistics.transferred(transferstart);
+					taskutils.reportOutputFileDependency(null, outfile);
+				} catch (IOException e) {
+					throw ObjectUtils.sneakyThrow(e);
+				}
+			}
+
+			@Override
+			public void visit(LocalFileLocation loc) {
+				SakerPath path = loc.getLocalPath();
+				LocalFileProvider fp = LocalFileProvider.getInstance();
+				try {
+					fp.ensureWriteRequest(path, FileEntry.TYPE_FILE,
+							SakerFileProvider.OPERATION_FLAG_DELETE_INTERMEDIATE_FILES);
+					long transferstart = System.nanoTime();
+					try (OutputStream os = Files.newOutputStream(LocalFileProvider.toRealPath(path))) {
+						writeEntries(format, entries, os, statistics);
+					}
+					statistics.transferred(transferstart);
+					ContentDescriptor contentdescriptor = taskcontext
+							.invalidateGetContentDescriptor(fp.getPathKey(path));
+					taskcontext.reportExecutionDependency(new LocalFileContentDescriptorExecutionProperty(path),
+							contentdescriptor);
+				} catch (IOException e) {
+					throw ObjectUtils.sneakyThrow(e);
+				}
+			}
+		});
+	}
+
+	private void addExecutionSource(SakerPath filepath, String name, boolean childrenatroot) {
+		targetLocation.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(ExecutionFileLocation loc) {
+				checkTargetNotInSource(filepath, loc.getPath());
+			}
+
+			@Override
+			public void visit(LocalFileLocation loc) {
+				//different file hierarchies
+			}
+		});
+		TaskExecutionUtilities taskutils = taskcontext.getTaskUtilities();
+		SakerFile file = taskutils.resolveAtPath(filepath);
+		if (file == null) {
+			throw ObjectUtils.sneakyThrow(new FileNotFoundException("File to copy not found: " + filepath));
+		}
+		taskutils.reportInputFileDependency(null, file);
+		if (!(file instanceof SakerDirectory)) {
+			addEntry(getFileEntryPath(filepath, name), file.getContentDescriptor(), file::writeTo);
+			return;
+		}
+		SakerPath entrydirpath = getDirectoryEntryPath(name, childrenatroot);
+		NavigableMap<SakerPath, SakerFile> files = CopyFileWorkerTaskFactory
+				.collectReportDirectoryCopyFiles(taskcontext, filepath, wildcards, excludes);
+		for (Entry<SakerPath, SakerFile> entry : files.entrySet()) {
+			SakerFile childfile = entry.getValue();
+			SakerPath entrypath = entrydirpath.resolve(filepath.relativize(entry.getKey()));
+			if (childfile instanceof SakerDirectory) {
+				addEntry(entrypath, DirectoryContentDescriptor.INSTANCE, null);
+			} else {
+				addEntry(entrypath, childfile.getContentDescriptor(), childfile::writeTo);
+			}
+		}
+	}
+
+	private void addLocalSource(SakerPath filepath, String name, boolean childrenatroot) {
+		targetLocation.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(ExecutionFileLocation loc) {
+				//different file hierarchies
+			}
+
+			@Override
+			public void visit(LocalFileLocation loc) {
+				checkTargetNotInSource(filepath, loc.getLocalPath());
+			}
+		});
+		TaskExecutionUtilities taskutils = taskcontext.getTaskUtilities();
+		ContentDescriptor filecd = taskutils
+				.getReportExecutionDependency(new LocalFileContentDescriptorExecutionProperty(filepath));
+		if (filecd == null) {
+			throw ObjectUtils.sneakyThrow(new FileNotFoundException("File to copy not found: " + filepath));
+		}
+		if (!DirectoryContentDescriptor.INSTANCE.equals(filecd)) {
+			addEntry(getFileEntryPath(filepath, name), filecd, os -> writeLocalFile(filepath, os));
+			return;
+		}
+		SakerPath entrydirpath = getDirectoryEntryPath(name, childrenatroot);
+		if (wildcards.isEmpty()) {
+			return;
+		}
+		//the paths and attributes of the children are reported using a single execution property
+		LocalFilesFingerprint sourceprint = taskutils.getReportExecutionDependency(
+				new LocalDirectoryFingerprintExecutionProperty(filepath,
+						CopyFileWorkerTaskFactory.ALL_FILES_WILDCARD_SET.equals(wildcards) ? null : wildcards,
+						excludes, null));
+		for (Entry<SakerPath, FileEntry> entry : sourceprint.getEntries().entrySet()) {
+			SakerPath childpath = filepath.resolve(entry.getKey());
+			FileEntry attrs = entry.getValue();
+			addEntry(entrydirpath.resolve(entry.getKey()), attrs,
+					attrs.isDirectory() ? null : os -> writeLocalFile(childpath, os));
+		}
+	}
+
+	private SakerPath getDirectoryEntryPath(String name, boolean childrenatroot) {
+		if (childrenatroot) {
+			return SakerPath.EMPTY;
+		}
+		SakerPath result = SakerPath.valueOf(name);
+		addEntry(result, DirectoryContentDescriptor.INSTANCE, null);
+		return result;
+	}
+
+	private static SakerPath getFileEntryPath(SakerPath filepath, String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("Copy source has no file name: " + filepath);
+		}
+		return SakerPath.valueOf(name);
+	}
+
+	private void addEntry(SakerPath entrypath, Object contentkey, EntryContents contents) {
+		if (entries.containsKey(entrypath)) {
+			throw new IllegalArgumentException("Multiple archive entries with the same path: " + entrypath);
+		}
+		entries.put(entrypath, contents);
+		entryContentKeys.put(entrypath, contentkey);
+	}
+
+	/**
+	 * Writes the entries to the output as an archive, and records them in the statistics if it is not
+	 * <code>null</code>.
+	 */
+	private static void writeEntries(ArchiveFormat format, NavigableMap<SakerPath, EntryContents> entries,
+			OutputStream os, CopyStatistics statistics) throws IOException {
+		Map<SakerPath, EntryContents> orderedentries = entries;
+		if (format == ArchiveFormat.JAR && entries.containsKey(MANIFEST_ENTRY_PATH)) {
+			//JarInputStream only recognizes the manifest if it is the first entry, or the second after its directory
+			orderedentries = new LinkedHashMap<>();
+			if (entries.containsKey(MANIFEST_DIRECTORY_PATH)) {
+				orderedentries.put(MANIFEST_DIRECTORY_PATH, null);
+			}
+			orderedentries.put(MANIFEST_ENTRY_PATH, entries.get(MANIFEST_ENTRY_PATH));
+			//the already present keys keep their position
+			orderedentries.putAll(entries);
+		}
+		try (ZipOutputStream zipos = format.createOutputStream(os)) {
+			for (Entry<SakerPath, EntryContents> entry : orderedentries.entrySet()) {
+				EntryContents contents = entry.getValue();
+				ZipEntry zipentry = new ZipEntry(
+						contents == null ? entry.getKey() + "/" : entry.getKey().toString());
+				zipentry.setTime(ENTRY_TIME);
+				zipos.putNextEntry(zipentry);
+				if (contents != null) {
+					contents.writeTo(zipos);
+				}
+				zipos.closeEntry();
+				if (statistics == null) {
+					continue;
+				}
+				if (contents == null) {
+					statistics.directoryCreated();
+				} else {
+					//the size of the entry is set when it is closed
+					statistics.fileWritten(zipentry.getSize());
+				}
+			}
+		}
+	}
+
+	private static void writeLocalFile(SakerPath path, OutputStream os) throws IOException {
+		Files.copy(LocalFileProvider.toRealPath(path), os);
+	}
+
+	private static void checkTargetNotInSource(SakerPath sourcepath, SakerPath targetpath) {
+		if (targetpath.startsWith(sourcepath)) {
+			throw new IllegalArgumentException(
+					"Archive target is in the copy source: " + sourcepath + " - " + targetpath);
+		}
+	}
+
+	@FunctionalInterface
+	private interface EntryContents {
+		public void writeTo(OutputStream os) throws IOException;
+	}
+
+	/**
+	 * The archive file that is added to the execution file hierarchy.
+	 * <p>
+	 * The archive is written directly to the output when the file is synchronized or its contents are read, it is not
+	 * kept in memory.
+	 */
+	private static final class ArchiveSakerFile extends SakerFileBase {
+		private final ArchiveFormat format;
+		private final NavigableMap<SakerPath, EntryContents> entries;
+		private final ContentDescriptor contentDescriptor;
+		/**
+		 * The statistics to record the entries in when the archive is first written.
+		 */
+		private final AtomicReference<CopyStatistics> statistics;
+
+		public ArchiveSakerFile(String name, ArchiveFormat format, NavigableMap<SakerPath, EntryContents> entries,
+				NavigableMap<SakerPath, Object> entrycontentkeys, CopyStatistics statistics) {
+			super(name);
+			this.format = format;
+			this.entries = ImmutableUtils.makeImmutableNavigableMap(entries);
+			this.contentDescriptor = new SerializableContentDescriptor(ImmutableUtils.asUnmodifiableArrayList(
+					ArchiveSakerFile.class.getName(), format.name(), new TreeMap<>(entrycontentkeys)));
+			this.statistics = new AtomicReference<>(statistics);
+		}
+
+		@Override
+		public ContentDescriptor getContentDescriptor() {
+			return contentDescriptor;
+		}
+
+		@Override
+		public void writeToStreamImpl(OutputStream os) throws IOException {
+			writeEntries(format, entries, os, statistics.getAndSet(null));
+		}
+	}
+}
@@ -28,6 +28,8 @@ public class CopyFileTaskOutputImpl implements Externalizable {
 
 	private FileLocation target;
 	private FileCollection copiedFiles;
+	private int writtenFileCount;
+	private int skippedFileCount;
 
 	/**
 	 * For {@link Externalizable}.
@@ -40,6 +42,14 @@ public class CopyFileTaskOutputImpl implements Externalizable {
 		this.copiedFiles = copiedFiles;
 	}
 
+	public CopyFileTaskOutputImpl(FileLocation target, FileCollection copiedFiles, int writtenFileCount,
+			int skippedFileCount) {
+		this.target = target;
+		this.copiedFiles = copiedFiles;
+		this.writtenFileCount = writtenFileCount;
+		this.skippedFileCount = skippedFileCount;
+	}
+
 	public FileLocation getTarget() {
 		return target;
 	}
@@ -48,18 +58,33 @@ public class CopyFileTaskOutputImpl implements Externalizable {
 		return copiedFiles;
 	}
 
+	public int getWrittenFileCount() {
+		return writtenFileCount;
+	}
+
+	public int getSkippedFileCount() {
+		return skippedFileCount;
+	}
+
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
 		out.writeObject(target);
 		out.writeObject(copiedFiles);
+		out.writeInt(writtenFileCount);
+		out.writeInt(skippedFileCount);
 	}
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 		target = (FileLocation) in.readObject();
 		copiedFiles = (FileCollection) in.readObject();
+		writtenFileCount = in.readInt();
+		skippedFileCount = in.readInt();
 	}
 
+	//the written and skipped file counts are not part of the equality
+	//they only describe how the output was produced, and shouldn't cause the dependent tasks to rerun
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -94,7 +119,8 @@ public class CopyFileTaskOutputImpl implements Externalizable {
 	@Override
 	public String toString() {
 		return getClass().getSimpleName() + "[" + (target != null ? "target=" + target + ", " : "")
-				+ (copiedFiles != null ? "copiedFiles=" + copiedFiles : "") + "]";
+				+ (copiedFiles != null ? "copiedFiles=" + copiedFiles + ", " : "") + "writtenFileCount="
+				+ writtenFileCount + ", skippedFileCount=" + skippedFileCount + "]";
 	}
 
 }
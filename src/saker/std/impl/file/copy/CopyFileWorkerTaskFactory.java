@@ -20,14 +20,28 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import saker.build.file.DelegateSakerFile;
 import saker.build.file.DirectoryVisitPredicate;
@@ -37,16 +51,21 @@ import saker.build.file.content.ContentDescriptor;
 import saker.build.file.content.DirectoryContentDescriptor;
 import saker.build.file.path.ProviderHolderPathKey;
 import saker.build.file.path.SakerPath;
-import saker.build.file.path.SimpleProviderHolderPathKey;
 import saker.build.file.path.WildcardPath;
-import saker.build.file.path.WildcardPath.ItemLister;
+import saker.build.file.provider.FileEntry;
 import saker.build.file.provider.LocalFileProvider;
 import saker.build.file.provider.SakerPathFiles;
 import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.InnerTaskExecutionParameters;
+import saker.build.task.InnerTaskResultHolder;
+import saker.build.task.InnerTaskResults;
 import saker.build.task.Task;
 import saker.build.task.TaskContext;
 import saker.build.task.TaskExecutionUtilities;
 import saker.build.task.TaskFactory;
+import saker.build.task.delta.BuildDelta;
+import saker.build.task.delta.DeltaType;
+import saker.build.task.delta.ExecutionPropertyChangeDelta;
 import saker.build.task.dependencies.FileCollectionStrategy;
 import saker.build.task.identifier.TaskIdentifier;
 import saker.build.task.utils.dependencies.RecursiveFileCollectionStrategy;
@@ -61,20 +80,37 @@ import saker.std.api.file.location.FileCollection;
 import saker.std.api.file.location.FileLocation;
 import saker.std.api.file.location.FileLocationVisitor;
 import saker.std.api.file.location.LocalFileLocation;
-import saker.std.impl.file.property.LocalDirectoryRecursiveFilePathsExecutionProperty;
-import saker.std.impl.file.property.LocalDirectoryWildcardsFilePathsExecutionProperty;
+import saker.std.impl.file.copy.LocalDirectoryCopier.CopyResult;
+import saker.std.impl.file.property.LocalDirectoryFingerprintExecutionProperty;
+import saker.std.impl.file.property.LocalFileBuildCache;
 import saker.std.impl.file.property.LocalFileContentDescriptorExecutionProperty;
+import saker.std.impl.file.property.LocalFilesFingerprint;
+import saker.std.impl.file.property.LocalFilesFingerprintExecutionProperty;
+import saker.std.impl.file.wildcard.WildcardSetMatcher;
+import saker.std.impl.util.IOComputationTokens;
 import saker.std.main.file.copy.CopyFileTaskFactory;
 
 public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Object>, Externalizable, TaskIdentifier {
 	private static final long serialVersionUID = 1L;
 
-	private static final NavigableSet<WildcardPath> ALL_FILES_WILDCARD_SET = ImmutableUtils
+	static final NavigableSet<WildcardPath> ALL_FILES_WILDCARD_SET = ImmutableUtils
 			.makeImmutableNavigableSet(new WildcardPath[] { WildcardPath.valueOf("**") });
+	private static final int MAX_SHARD_FILE_COUNT = 1024;
 
 	private FileLocation sourceLocation;
+	private List<FileLocation> sourceLocations;
 	private FileLocation targetLocation;
 	private NavigableSet<WildcardPath> wildcards;
+	private int parallelism;
+	private CopyMode mode = CopyMode.COPY;
+	private NavigableSet<WildcardPath> excludes;
+	private long shardSize;
+	private long largeFileThreshold = LocalDirectoryCopier.DEFAULT_CHUNKED_COPY_THRESHOLD;
+	private ArchiveFormat archiveFormat;
+	private boolean verify;
+	private SymlinkHandling symlinks = SymlinkHandling.FOLLOW;
+
+	private transient volatile int computationTokenCount = -1;
 
 	/**
 	 * For {@link Externalizable}.
@@ -89,11 +125,188 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 		this.wildcards = wildcards;
 	}
 
+	/**
+	 * Creates a worker that copies multiple sources into the target directory.
+	 * <p>
+	 * Each source is copied to the child of the target directory that has the same file name as the source.
+	 * 
+	 * @param sourcelocations
+	 *            The source file locations.
+	 * @param targetdirectorylocation
+	 *            The target directory location.
+	 * @param wildcards
+	 *            The wildcards to use for the sources that are directories.
+	 */
+	public CopyFileWorkerTaskFactory(Collection<? extends FileLocation> sourcelocations,
+			FileLocation targetdirectorylocation, NavigableSet<WildcardPath> wildcards) {
+		this.sourceLocations = ImmutableUtils.makeImmutableList(sourcelocations);
+		this.targetLocation = targetdirectorylocation;
+		this.wildcards = wildcards;
+	}
+
+	/**
+	 * Sets the maximum number of threads that are used when copying the children of a local directory to a local
+	 * target.
+	 *
+	 * @param parallelism
+	 *            The thread count or 0 to use the default.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Sets how the files should be transferred to local targets.
+	 * 
+	 * @param mode
+	 *            The copy mode.
+	 */
+	public void setMode(CopyMode mode) {
+		this.mode = mode == null ? CopyMode.COPY : mode;
+	}
+
+	/**
+	 * Sets the wildcards that specify the files which shouldn't be copied when a directory is copied.
+	 * <p>
+	 * A file is excluded if its path or any of its parent paths relative to the copied directory are matched by the
+	 * wildcards. Excluded directories are not descended into.
+	 * 
+	 * @param excludes
+	 *            The exclude wildcards. May be <code>null</code> or empty.
+	 */
+	public void setExcludes(NavigableSet<WildcardPath> excludes) {
+		this.excludes = excludes == null || excludes.isEmpty() ? null : excludes;
+	}
+
+	/**
+	 * Sets the maximum total size of the files that are copied by a single inner task when a local directory is
+	 * copied to a local target.
+	 * <p>
+	 * If set, the files are partitioned into shards in path order, and each shard is copied by an inner task. The
+	 * shards request computation tokens, so the build system distributes them over the available cores.
+	 * 
+	 * @param shardSize
+	 *            The shard size in bytes or 0 to copy the files in the worker task.
+	 */
+	public void setShardSize(long shardSize) {
+		this.shardSize = Math.max(shardSize, 0);
+	}
+
+	/**
+	 * Sets the minimum size of the files that are copied in chunks concurrently when local files are copied to a local
+	 * target.
+	 * <p>
+	 * The target of a large file is preallocated, and the chunks are copied using multiple threads, so the transfer is
+	 * not limited by the throughput of a single thread.
+	 * 
+	 * @param largeFileThreshold
+	 *            The size threshold in bytes.
+	 */
+	public void setLargeFileThreshold(long largeFileThreshold) {
+		this.largeFileThreshold = largeFileThreshold;
+	}
+
+	/**
+	 * Sets the format of the archive that the sources are written to.
+	 * <p>
+	 * If set, the target location is an archive file, and the sources are written as its entries in path order. The
+	 * contents of the source files are streamed into the archive without copying them to the file system first.
+	 * 
+	 * @param archiveFormat
+	 *            The archive format or <code>null</code> to copy the sources to the file system.
+	 */
+	public void setArchiveFormat(ArchiveFormat archiveFormat) {
+		this.archiveFormat = archiveFormat;
+	}
+
+	/**
+	 * Sets whether the contents of the files copied from a local source to a local target should be verified.
+	 * <p>
+	 * The digests of the files are computed while they are copied, and the copying fails if the source was modified
+	 * meanwhile, or if the digest differs from the recorded digest of the source.
+	 * 
+	 * @param verify
+	 *            <code>true</code> to verify the copied files.
+	 */
+	public void setVerify(boolean verify) {
+		this.verify = verify;
+	}
+
+	/**
+	 * Sets how the symbolic links in a local source directory should be handled when it is copied to a local target.
+	 * <p>
+	 * If the links are not followed, the directories they point to are not traversed, and the dependencies are
+	 * reported on the attributes of the links themselves.
+	 * 
+	 * @param symlinks
+	 *            The symbolic link handling.
+	 */
+	public void setSymlinks(SymlinkHandling symlinks) {
+		this.symlinks = symlinks == null ? SymlinkHandling.FOLLOW : symlinks;
+	}
+
 	@Override
 	public Task<? extends Object> createTask(ExecutionContext executioncontext) {
 		return this;
 	}
 
+	/**
+	 * Estimates the cost of the copying based on the sources.
+	 * <p>
+	 * The sizes of the local source files are used for the estimation. The contents of directories are not known
+	 * before the task runs, so copying a directory is assumed to require at least one token.
+	 */
+	@Override
+	public int getRequestedComputationTokenCount() {
+		if (shardSize > 0) {
+			//the shards request the tokens for the copying
+			return 0;
+		}
+		int result = computationTokenCount;
+		if (result < 0) {
+			result = estimateComputationTokenCount();
+			computationTokenCount = result;
+		}
+		return result;
+	}
+
+	@Override
+	public Set<String> getCapabilities() {
+		if (shardSize > 0) {
+			return Collections.singleton(CAPABILITY_INNER_TASKS_COMPUTATIONAL);
+		}
+		return TaskFactory.super.getCapabilities();
+	}
+
+	private int estimateComputationTokenCount() {
+		List<FileLocation> sources = sourceLocations == null ? Collections.singletonList(sourceLocation)
+				: sourceLocations;
+		long[] bytecount = { 0 };
+		boolean[] hasdirectory = { false };
+		for (FileLocation source : sources) {
+			source.accept(new FileLocationVisitor() {
+				@Override
+				public void visit(LocalFileLocation loc) {
+					FileEntry attrs = IOComputationTokens.getLocalFileAttributesOrNull(loc.getLocalPath());
+					if (attrs == null) {
+						return;
+					}
+					if (attrs.isDirectory()) {
+						hasdirectory[0] = true;
+					} else {
+						bytecount[0] += attrs.getSize();
+					}
+				}
+
+				@Override
+				public void visit(ExecutionFileLocation loc) {
+					//the size of execution files is not known without resolving them
+				}
+			});
+		}
+		return IOComputationTokens.getComputationTokenCount(sources.size(), bytecount[0], hasdirectory[0] ? 1 : 0);
+	}
+
 	@Override
 	public Object run(TaskContext taskcontext) throws Exception {
 		if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
@@ -102,11 +315,167 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 		taskcontext.setStandardOutDisplayIdentifier(CopyFileTaskFactory.TASK_NAME);
 
 		Collection<FileLocation> copiedfiles = new LinkedHashSet<>();
-		sourceLocation.accept(new FileLocationVisitor() {
+		CopyStatistics statistics = new CopyStatistics();
+		long starttime = System.nanoTime();
+		try {
+			if (archiveFormat != null) {
+				copyToArchive(taskcontext, statistics);
+				return createTaskOutput(copiedfiles, statistics);
+			}
+			if (sourceLocations != null) {
+				copyBatch(taskcontext, copiedfiles, statistics);
+				return createTaskOutput(copiedfiles, statistics);
+			}
+			sourceLocation.accept(new FileLocationVisitor() {
+				@Override
+				public void visit(ExecutionFileLocation loc) {
+					try {
+						copyFrom(loc, targetLocation, taskcontext, copiedfiles, statistics);
+					} catch (Exception e) {
+						throw ObjectUtils.sneakyThrow(e);
+					}
+				}
+
+				@Override
+				public void visit(LocalFileLocation loc) {
+					try {
+						copyFrom(loc, targetLocation, taskcontext, copiedfiles, statistics);
+					} catch (Exception e) {
+						throw ObjectUtils.sneakyThrow(e);
+					}
+				}
+			});
+			return createTaskOutput(copiedfiles, statistics);
+		} finally {
+			//the written local files are invalidated before their dependencies are reported
+			//invalidate the whole target as well, as failed copies may have written some files
+			invalidateLocalBuildCache(taskcontext);
+			//publish the statistics for failed copies as well, they can help diagnosing the failure
+			if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_009) {
+				BuildTrace.setValues(statistics.toBuildTraceValues(System.nanoTime() - starttime),
+						BuildTrace.VALUE_CATEGORY_TASK);
+			}
+		}
+	}
+
+	private void invalidateLocalBuildCache(TaskContext taskcontext) {
+		ExecutionContext executioncontext = taskcontext.getExecutionContext();
+		targetLocation.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(LocalFileLocation loc) {
+				LocalFileBuildCache.invalidate(executioncontext, loc.getLocalPath());
+			}
+
 			@Override
 			public void visit(ExecutionFileLocation loc) {
+				Path localpath = executioncontext.getPathConfiguration().toLocalPath(loc.getPath());
+				if (localpath != null) {
+					LocalFileBuildCache.invalidate(executioncontext, SakerPath.valueOf(localpath));
+				}
+			}
+		});
+	}
+
+	private CopyFileTaskOutputImpl createTaskOutput(Collection<FileLocation> copiedfiles, CopyStatistics statistics) {
+		return new CopyFileTaskOutputImpl(targetLocation, FileCollection.createSorted(copiedfiles),
+				statistics.getWrittenFileCount(), statistics.getSkippedFileCount());
+	}
+
+	private void copyToArchive(TaskContext taskcontext, CopyStatistics statistics) {
+		ArchiveWriter writer = new ArchiveWriter(taskcontext, targetLocation, wildcards, excludes, statistics);
+		if (sourceLocations == null) {
+			writer.addSource(sourceLocation);
+		} else {
+			Set<String> names = new TreeSet<>();
+			for (FileLocation sourcelocation : sourceLocations) {
+				writer.addBatchSource(sourcelocation, names);
+			}
+		}
+		writer.write(archiveFormat);
+	}
+
+	/**
+	 * Copies the sources of a batch to the target directory.
+	 * <p>
+	 * The sources that are plain files are handled together, so the target directory is resolved only once and the
+	 * dependencies of the files are reported in bulk. Directories are copied the same way as single sources.
+	 */
+	private void copyBatch(TaskContext taskcontext, Collection<FileLocation> copiedfiles, CopyStatistics statistics)
+			throws Exception {
+		NavigableMap<String, ExecutionFileLocation> executionsources = new TreeMap<>();
+		NavigableMap<SakerPath, SakerPath> localsources = new TreeMap<>();
+		Set<String> names = new TreeSet<>();
+		for (FileLocation sourcelocation : sourceLocations) {
+			sourcelocation.accept(new FileLocationVisitor() {
+				@Override
+				public void visit(ExecutionFileLocation loc) {
+					String name = getBatchSourceFileName(loc.getPath(), names);
+					executionsources.put(name, loc);
+				}
+
+				@Override
+				public void visit(LocalFileLocation loc) {
+					String name = getBatchSourceFileName(loc.getLocalPath(), names);
+					localsources.put(SakerPath.valueOf(name), loc.getLocalPath());
+				}
+			});
+		}
+		TaskExecutionUtilities taskutils = taskcontext.getTaskUtilities();
+		targetLocation.accept(new FileLocationVisitor() {
+			@Override
+			public void visit(ExecutionFileLocation loc) {
+				SakerPath targetdirpath = loc.getPath();
+				SakerDirectory targetdir = taskutils.resolveDirectoryAtPathCreateIfAbsent(targetdirpath);
+				if (targetdir == null) {
+					throw new RuntimeException("Failed to create copy target directory at: " + targetdirpath);
+				}
 				try {
-					copyFrom(loc, targetLocation, taskcontext, wildcards, copiedfiles);
+					List<SakerFile> inputfiles = new ArrayList<>();
+					List<SakerFile> outputfiles = new ArrayList<>();
+					NavigableSet<SakerPath> outputnames = new TreeSet<>();
+					for (Entry<String, ExecutionFileLocation> entry : executionsources.entrySet()) {
+						String name = entry.getKey();
+						SakerPath filepath = entry.getValue().getPath();
+						SakerPath pastefilepath = targetdirpath.resolve(name);
+						SakerFile file = taskutils.resolveAtPath(filepath);
+						if (file == null) {
+							throw new FileNotFoundException("File to copy not found: " + filepath);
+						}
+						if (file instanceof SakerDirectory) {
+							//the directory contents are counted by the copying
+							copyFrom(entry.getValue(), ExecutionFileLocation.create(pastefilepath), taskcontext,
+									copiedfiles, statistics);
+							continue;
+						}
+						statistics.filesVisited(1);
+						if (pastefilepath.equals(filepath)) {
+							throw new IllegalArgumentException(
+									"Copy source and target paths are the same: " + filepath);
+						}
+						DelegateSakerFile addedfile = new DelegateSakerFile(name, file);
+						if (targetdir.addOverwriteIfNotDirectory(addedfile) != null) {
+							throw new RuntimeException("Failed to copy file to target path: " + pastefilepath
+									+ " (a directory with the same name is already present)");
+						}
+						inputfiles.add(file);
+						outputfiles.add(addedfile);
+						outputnames.add(SakerPath.valueOf(name));
+						copiedfiles.add(ExecutionFileLocation.create(pastefilepath));
+						statistics.fileWritten();
+					}
+					taskutils.reportInputFileDependency(null, inputfiles);
+					if (!outputnames.isEmpty()) {
+						long transferstart = System.nanoTime();
+						targetdir.synchronize(new FixedDirectoryVisitPredicate(outputnames));
+						statistics.transferred(transferstart);
+					}
+					taskutils.reportOutputFileDependency(null, outputfiles);
+
+					for (Entry<SakerPath, SakerPath> entry : localsources.entrySet()) {
+						copyFrom(LocalFileLocation.create(entry.getValue()),
+								ExecutionFileLocation.create(targetdirpath.resolve(entry.getKey())), taskcontext,
+								copiedfiles, statistics);
+					}
 				} catch (Exception e) {
 					throw ObjectUtils.sneakyThrow(e);
 				}
@@ -114,18 +483,72 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 
 			@Override
 			public void visit(LocalFileLocation loc) {
+				SakerPath targetdirpath = loc.getLocalPath();
 				try {
-					copyFrom(loc, targetLocation, taskcontext, wildcards, copiedfiles);
+					LocalFileProvider.getInstance().createDirectories(targetdirpath);
+					statistics.directoryCreated();
+					if (!localsources.isEmpty()) {
+						//the attributes of all local sources are reported using a single execution property
+						LocalFilesFingerprint sourceprint = taskutils.getReportExecutionDependency(
+								new LocalFilesFingerprintExecutionProperty(
+										ImmutableUtils.unmodifiableNavigableMap(localsources), null));
+						NavigableMap<SakerPath, FileEntry> sourceentries = sourceprint.getEntries();
+						Map<SakerPath, SakerPath> copyfiles = new LinkedHashMap<>();
+						NavigableMap<SakerPath, SakerPath> pastefilepaths = new TreeMap<>();
+						for (Entry<SakerPath, SakerPath> entry : localsources.entrySet()) {
+							SakerPath filepath = entry.getValue();
+							SakerPath pastefilepath = targetdirpath.resolve(entry.getKey());
+							FileEntry attrs = sourceentries.get(entry.getKey());
+							if (attrs == null) {
+								throw new FileNotFoundException("File to copy not found: " + filepath);
+							}
+							if (attrs.isDirectory()) {
+								//the directory contents are counted by the copying
+								copyFrom(LocalFileLocation.create(filepath), LocalFileLocation.create(pastefilepath),
+										taskcontext, copiedfiles, statistics);
+								continue;
+							}
+							statistics.filesVisited(1);
+							if (pastefilepath.equals(filepath)) {
+								throw new IllegalArgumentException(
+										"Copy source and target paths are the same: " + filepath);
+							}
+							copyfiles.put(filepath, pastefilepath);
+							pastefilepaths.put(entry.getKey(), pastefilepath);
+							copiedfiles.add(LocalFileLocation.create(pastefilepath));
+						}
+						LocalDirectoryCopier copier = new LocalDirectoryCopier(taskcontext, parallelism,
+								new LocalFileLinker(taskcontext, mode), statistics, largeFileThreshold, verify);
+						long transferstart = System.nanoTime();
+						copier.copyFiles(copyfiles);
+						statistics.transferred(transferstart);
+						reportLocalOutputFingerprint(taskcontext, pastefilepaths);
+					}
+
+					for (Entry<String, ExecutionFileLocation> entry : executionsources.entrySet()) {
+						copyFrom(entry.getValue(), LocalFileLocation.create(targetdirpath.resolve(entry.getKey())),
+								taskcontext, copiedfiles, statistics);
+					}
 				} catch (Exception e) {
 					throw ObjectUtils.sneakyThrow(e);
 				}
 			}
 		});
-		return new CopyFileTaskOutputImpl(targetLocation, FileCollection.create(copiedfiles));
 	}
 
-	private static void copyFrom(LocalFileLocation loc, FileLocation targetlocation, TaskContext taskcontext,
-			NavigableSet<WildcardPath> wildcards, Collection<FileLocation> copiedfiles) throws Exception {
+	static String getBatchSourceFileName(SakerPath path, Set<String> names) {
+		String name = path.getFileName();
+		if (name == null) {
+			throw new IllegalArgumentException("Copy source has no file name: " + path);
+		}
+		if (!names.add(name)) {
+			throw new IllegalArgumentException("Multiple copy sources have the same file name: " + name);
+		}
+		return name;
+	}
+
+	private void copyFrom(LocalFileLocation loc, FileLocation targetlocation, TaskContext taskcontext,
+			Collection<FileLocation> copiedfiles, CopyStatistics statistics) throws Exception {
 		SakerPath filepath = loc.getLocalPath();
 		LocalFileProvider localfp = LocalFileProvider.getInstance();
 		ProviderHolderPathKey filepathkey = localfp.getPathKey(filepath);
@@ -148,21 +571,20 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 						SakerDirectory createddir = (SakerDirectory) createdfile;
 						SakerDirectory overwritedir = pastedir.addOverwriteIfNotDirectory(createdfile);
 
+						//the paths and attributes of the children are reported using a single execution property
+						//report it before the children are listed, so any concurrent modifications cause a rerun
+						taskutils.getReportExecutionDependency(new LocalDirectoryFingerprintExecutionProperty(filepath,
+								ALL_FILES_WILDCARD_SET.equals(wildcards) ? null : wildcards, excludes, null));
 						NavigableMap<SakerPath, SakerFile> createddirchildren;
-						if (ALL_FILES_WILDCARD_SET.equals(wildcards)) {
+						if (ALL_FILES_WILDCARD_SET.equals(wildcards) && excludes == null) {
 							createddirchildren = createddir.getFilesRecursiveByPath(SakerPath.EMPTY,
 									DirectoryVisitPredicate.everything());
-							taskcontext.reportExecutionDependency(
-									new LocalDirectoryRecursiveFilePathsExecutionProperty(filepath),
-									ImmutableUtils.makeImmutableNavigableSet(createddirchildren.navigableKeySet()));
 						} else {
-							NavigableMap<SakerPath, SakerFile> absolutechildren = createddir
-									.getFilesRecursiveByPath(filepath, new WildcardsDirectoryVisitPredicate(wildcards));
+							NavigableMap<SakerPath, SakerFile> absolutechildren = createddir.getFilesRecursiveByPath(filepath,
+									createWildcardsDirectoryVisitPredicate(wildcards, excludes));
 							createddirchildren = SakerPathFiles.relativizeSubPath(absolutechildren, filepath);
-							taskcontext.reportExecutionDependency(
-									new LocalDirectoryWildcardsFilePathsExecutionProperty(filepath, wildcards),
-									ImmutableUtils.makeImmutableNavigableSet(absolutechildren.navigableKeySet()));
 						}
+						statistics.filesVisited(createddirchildren.size() + 1);
 						for (SakerPath pastechildpath : createddirchildren.keySet()) {
 							copiedfiles.add(ExecutionFileLocation.create(pastefilepath.append(pastechildpath)));
 						}
@@ -174,28 +596,36 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 							syncdir = createddir;
 							//the created file was added to the directory, possibly overwriting a file
 							for (Entry<SakerPath, SakerFile> entry : createddirchildren.entrySet()) {
-								ContentDescriptor createdfilecd = entry.getValue().getContentDescriptor();
-								SakerPath childrelpath = entry.getKey();
-								taskcontext.reportExecutionDependency(
-										new LocalFileContentDescriptorExecutionProperty(filepath.resolve(childrelpath)),
-										createdfilecd);
-								taskcontext.reportOutputFileDependency(null, pastefilepath.resolve(childrelpath),
-										createdfilecd);
+								taskcontext.reportOutputFileDependency(null, pastefilepath.resolve(entry.getKey()),
+										entry.getValue().getContentDescriptor());
 							}
 						} else {
 							syncdir = overwritedir;
 							//a directory is already present at the given location
 							//merge the files
-							mergeHierarchy(taskcontext, overwritedir, createddirchildren, 1, filepath, pastefilepath);
+							mergeHierarchy(taskcontext, overwritedir, createddirchildren, pastefilepath);
 							taskutils.reportOutputFileDependency(null, overwritedir);
 						}
 						//only synchronize the copied children
+						long transferstart = System.nanoTime();
 						syncdir.synchronize(new FixedDirectoryVisitPredicate(createddirchildren.navigableKeySet()));
+						statistics.transferred(transferstart);
+						for (SakerFile childfile : createddirchildren.values()) {
+							if (childfile instanceof SakerDirectory) {
+								statistics.directoryCreated();
+							} else {
+								statistics.fileWritten();
+							}
+						}
 					} else {
 						if (pastedir.addOverwriteIfNotDirectory(createdfile) != null) {
 							throw new RuntimeException("Failed to overwrite copy target directory at: " + pastedirpath);
 						}
+						statistics.filesVisited(1);
+						long transferstart = System.nanoTime();
 						createdfile.synchronize();
+						statistics.transferred(transferstart);
+						statistics.fileWritten();
 						taskutils.reportOutputFileDependency(null, createdfile);
 					}
 				} catch (IOException e) {
@@ -204,37 +634,47 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 			}
 
 			private void mergeHierarchy(TaskContext taskcontext, SakerDirectory targetdir,
-					NavigableMap<SakerPath, SakerFile> createddirchildren, int depth, SakerPath sourcelocalfilepath,
-					SakerPath pastefilepath) {
-				//XXX could be more efficient without including delegate files
-
+					NavigableMap<SakerPath, SakerFile> createddirchildren, SakerPath pastefilepath) {
+				//the entries are iterated in path order, so the parent directories are visited before their children
+				//keep the stack of the currently merged directories, so each target directory is only resolved once
+				List<SakerPath> dirpathstack = new ArrayList<>();
+				List<SakerDirectory> dirstack = new ArrayList<>();
 				for (Entry<SakerPath, SakerFile> entry : createddirchildren.entrySet()) {
 					SakerPath entryrelpath = entry.getKey();
-					if (entryrelpath.getNameCount() != depth) {
-						continue;
+					int parentnamecount = entryrelpath.getNameCount() - 1;
+					int stacksize = dirpathstack.size();
+					while (stacksize > 0 && (stacksize > parentnamecount
+							|| !entryrelpath.startsWith(dirpathstack.get(stacksize - 1)))) {
+						--stacksize;
+						dirpathstack.remove(stacksize);
+						dirstack.remove(stacksize);
+					}
+					SakerDirectory parentdir = stacksize == 0 ? targetdir : dirstack.get(stacksize - 1);
+					//the parent directories may be missing from the entries if they're not included by the wildcards
+					for (; stacksize < parentnamecount; ++stacksize) {
+						parentdir = parentdir.getDirectoryCreate(entryrelpath.getName(stacksize));
+						dirpathstack.add(entryrelpath.subPath(0, stacksize + 1));
+						dirstack.add(parentdir);
 					}
-					ContentDescriptor filecd = entry.getValue().getContentDescriptor();
+					SakerFile putfile = entry.getValue();
+					ContentDescriptor filecd = putfile.getContentDescriptor();
 					SakerPath pastechildpath = pastefilepath.resolve(entryrelpath);
-					SakerPath childlocalpath = sourcelocalfilepath.resolve(entryrelpath);
 
-					SakerFile putfile = entry.getValue();
 					if (putfile instanceof SakerDirectory) {
-						SakerDirectory overwritedir = targetdir.getDirectoryCreate(putfile.getName());
-						//merge the contents for the child file
-						mergeHierarchy(taskcontext, overwritedir,
-								SakerPathFiles.getPathSubMapDirectoryChildren(createddirchildren, entryrelpath, false),
-								depth + 1, sourcelocalfilepath, pastefilepath);
+						SakerDirectory overwritedir = parentdir.getDirectoryCreate(putfile.getName());
+						dirpathstack.add(entryrelpath);
+						dirstack.add(overwritedir);
 					} else {
-						SakerDirectory overwritedir = targetdir
-								.addOverwriteIfNotDirectory(new DelegateSakerFile(putfile));
+						//the created directory is not part of the file hierarchy,
+						//so its files can be moved to the target instead of delegating to them
+						putfile.remove();
+						SakerDirectory overwritedir = parentdir.addOverwriteIfNotDirectory(putfile);
 						if (overwritedir != null) {
 							throw new RuntimeException(
 									"Failed overwrite directory with copied file: " + pastechildpath);
 						}
 					}
 
-					taskcontext.reportExecutionDependency(
-							new LocalFileContentDescriptorExecutionProperty(childlocalpath), filecd);
 					taskcontext.reportOutputFileDependency(null, pastechildpath, filecd);
 				}
 			}
@@ -247,58 +687,83 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 					throw new IllegalArgumentException(
 							"Copy source and target paths contain each other: " + filepath + " - " + pastefilepath);
 				}
-				ProviderHolderPathKey pastepathkey = localfp.getPathKey(pastefilepath);
 				try {
-					ContentDescriptor filecd = taskutils.synchronize(filepathkey, pastepathkey,
-							TaskExecutionUtilities.SYNCHRONIZE_FLAG_NO_OVERWRITE_DIRECTORY);
+					LocalDirectoryCopier copier = new LocalDirectoryCopier(taskcontext, parallelism,
+							new LocalFileLinker(taskcontext, mode, symlinks == SymlinkHandling.PRESERVE), statistics,
+							largeFileThreshold, verify);
+					statistics.filesVisited(1);
+					long transferstart = System.nanoTime();
+					CopyResult filecopy = copier.copyFile(filepath, pastefilepath);
+					statistics.transferred(transferstart);
+					LocalFileBuildCache.invalidate(taskcontext.getExecutionContext(), pastefilepath);
+					ContentDescriptor filecd = filecopy.getSourceContents();
 					taskcontext.reportExecutionDependency(new LocalFileContentDescriptorExecutionProperty(filepath),
 							filecd);
 					taskcontext.reportExecutionDependency(
-							new LocalFileContentDescriptorExecutionProperty(pastefilepath), filecd);
+							new LocalFileContentDescriptorExecutionProperty(pastefilepath),
+							filecopy.getTargetContents());
 
 					if (DirectoryContentDescriptor.INSTANCE.equals(filecd)) {
 						//we copied a directory. copy the children as well
-						NavigableMap<SakerPath, ? extends BasicFileAttributes> children;
-						if (ALL_FILES_WILDCARD_SET.equals(wildcards)) {
-							children = localfp.getDirectoryEntriesRecursively(filepath);
-							taskcontext.reportExecutionDependency(
-									new LocalDirectoryRecursiveFilePathsExecutionProperty(filepath),
-									ImmutableUtils.makeImmutableNavigableSet(children.navigableKeySet()));
+						//the paths and attributes of the children are reported using a single execution property
+						//the link targets are not traversed unless the links are followed
+						LocalFilesFingerprint sourceprint = taskutils
+								.getReportExecutionDependency(new LocalDirectoryFingerprintExecutionProperty(filepath,
+										ALL_FILES_WILDCARD_SET.equals(wildcards) ? null : wildcards, excludes,
+										symlinks == SymlinkHandling.FOLLOW, null));
+						NavigableMap<SakerPath, FileEntry> sourceentries = sourceprint.getEntries();
+						statistics.filesVisited(sourceentries.size());
+						if (symlinks == SymlinkHandling.SKIP) {
+							sourceentries = removeSymbolicLinks(sourceentries);
+						}
+
+						Object statetag = LocalDirectoryCopyState.getTaskOutputTag(filepath, pastefilepath);
+						LocalDirectoryCopyState prevstate = taskcontext.getPreviousTaskOutput(statetag,
+								LocalDirectoryCopyState.class);
+						NavigableMap<SakerPath, FileEntry> copychildren;
+						if (prevstate == null) {
+							copychildren = sourceentries;
 						} else {
-							NavigableMap<SakerPath, ? extends BasicFileAttributes> absolutechildren = WildcardPath
-									.getItems(wildcards,
-											ItemLister.forFileProvider(LocalFileProvider.getInstance(), filepath));
-							children = SakerPathFiles.relativizeSubPath(absolutechildren, filepath);
-							taskcontext.reportExecutionDependency(
-									new LocalDirectoryWildcardsFilePathsExecutionProperty(filepath, wildcards),
-									ImmutableUtils.makeImmutableNavigableSet(absolutechildren.navigableKeySet()));
+							//only copy the files that changed since the previous run
+							NavigableMap<SakerPath, FileEntry> currenttargetentries = null;
+							if (isLocalOutputFingerprintChanged(taskcontext)) {
+								currenttargetentries = getLocalFileEntries(pastefilepath,
+										prevstate.getTargetEntries().navigableKeySet());
+							}
+							copychildren = prevstate.getChangedEntries(sourceentries, currenttargetentries);
+							deleteRemovedTargetFiles(taskcontext, pastefilepath,
+									prevstate.getRemovedPaths(sourceentries));
 						}
-						for (Entry<SakerPath, ? extends BasicFileAttributes> childentry : children.entrySet()) {
-							SakerPath childrelpath = childentry.getKey();
-							copiedfiles.add(LocalFileLocation.create(pastefilepath.append(childrelpath)));
+						transferstart = System.nanoTime();
+						if (shardSize > 0) {
+							copyShards(taskcontext, copier, filepath, pastefilepath, copychildren, statistics);
+						} else {
+							copier.copy(filepath, pastefilepath, copychildren);
+						}
+						statistics.transferred(transferstart);
+
+						NavigableMap<SakerPath, SakerPath> pastechildpaths = new TreeMap<>();
+						for (SakerPath childrelpath : sourceentries.keySet()) {
 							SakerPath pastechildpath = pastefilepath.resolve(childrelpath);
-							SakerPath childpath = filepath.resolve(childrelpath);
-							ContentDescriptor childcopycd = taskutils.synchronize(localfp.getPathKey(childpath),
-									new SimpleProviderHolderPathKey(localfp, pastechildpath),
-									TaskExecutionUtilities.SYNCHRONIZE_FLAG_NO_OVERWRITE_DIRECTORY);
-
-							taskcontext.reportExecutionDependency(
-									new LocalFileContentDescriptorExecutionProperty(childpath), childcopycd);
-							taskcontext.reportExecutionDependency(
-									new LocalFileContentDescriptorExecutionProperty(pastechildpath), childcopycd);
+							copiedfiles.add(LocalFileLocation.create(pastechildpath));
+							pastechildpaths.put(childrelpath, pastechildpath);
 						}
+						LocalFilesFingerprint targetprint = reportLocalOutputFingerprint(taskcontext,
+								pastechildpaths);
+						taskcontext.setTaskOutput(statetag,
+								new LocalDirectoryCopyState(sourceentries, targetprint.getEntries()));
 						//remove the file location for the target path
 						copiedfiles.remove(LocalFileLocation.create(pastefilepath));
 					}
-				} catch (NullPointerException | IOException e) {
+				} catch (Exception e) {
 					throw ObjectUtils.sneakyThrow(e);
 				}
 			}
 		});
 	}
 
-	private static void copyFrom(ExecutionFileLocation loc, FileLocation targetlocation, TaskContext taskcontext,
-			Collection<WildcardPath> wildcards, Collection<FileLocation> copiedfiles) throws Exception {
+	private void copyFrom(ExecutionFileLocation loc, FileLocation targetlocation, TaskContext taskcontext,
+			Collection<FileLocation> copiedfiles, CopyStatistics statistics) throws Exception {
 		SakerPath filepath = loc.getPath();
 		SakerFile file = taskcontext.getTaskUtilities().resolveAtPath(filepath);
 		if (file == null) {
@@ -314,7 +779,8 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 							"Copy source and target paths contain each other: " + filepath + " - " + pastefilepath);
 				}
 
-				copyExecutionFileToExecutionPath(taskcontext, filepath, file, pastefilepath, wildcards, copiedfiles);
+				copyExecutionFileToExecutionPath(taskcontext, filepath, file, pastefilepath, wildcards, excludes,
+						copiedfiles, statistics);
 			}
 
 			@Override
@@ -326,14 +792,34 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 					//if a directory cannot be created
 					localfp.createDirectories(pastefilepath.getParent());
 					ProviderHolderPathKey pathkey = localfp.getPathKey(pastefilepath);
+					LocalFileLinker linker = new LocalFileLinker(taskcontext, mode);
 					if (file instanceof SakerDirectory) {
 						SakerDirectory dir = (SakerDirectory) file;
 						NavigableMap<SakerPath, SakerFile> copyfiles = collectReportDirectoryCopyFiles(taskcontext,
-								filepath, wildcards);
+								filepath, wildcards, excludes);
 						NavigableMap<SakerPath, SakerFile> relativecopyfiles = SakerPathFiles
 								.relativizeSubPath(copyfiles, filepath);
-						dir.synchronize(pathkey,
-								new NonDeletingFixedDirectoryVisitPredicate(relativecopyfiles.navigableKeySet()));
+						statistics.filesVisited(relativecopyfiles.size() + 1);
+						long transferstart = System.nanoTime();
+						if (linker.isLinking()) {
+							localfp.createDirectories(pastefilepath);
+							statistics.directoryCreated();
+							for (Entry<SakerPath, SakerFile> entry : relativecopyfiles.entrySet()) {
+								SakerPath pastechildpath = pastefilepath.resolve(entry.getKey());
+								SakerFile childfile = entry.getValue();
+								if (childfile instanceof SakerDirectory) {
+									localfp.createDirectories(pastechildpath);
+									statistics.directoryCreated();
+									continue;
+								}
+								linkExecutionFile(taskcontext, linker, childfile, pastechildpath, statistics);
+							}
+						} else {
+							NavigableSet<SakerPath> syncfiles = getChangedLocalTargetFiles(taskcontext,
+									pastefilepath, relativecopyfiles, statistics);
+							dir.synchronize(pathkey, new NonDeletingFixedDirectoryVisitPredicate(syncfiles));
+						}
+						statistics.transferred(transferstart);
 						if (ALL_FILES_WILDCARD_SET.equals(wildcards)) {
 							taskcontext.reportInputFileAdditionDependency(null,
 									RecursiveFileCollectionStrategy.create(filepath));
@@ -343,30 +829,245 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 										WildcardFileCollectionStrategy.create(filepath, wc));
 							}
 						}
-						for (Entry<SakerPath, SakerFile> entry : relativecopyfiles.entrySet()) {
-							SakerPath pastechildpath = pastefilepath.append(entry.getKey());
+						NavigableMap<SakerPath, SakerPath> pastechildpaths = new TreeMap<>();
+						for (SakerPath childrelpath : relativecopyfiles.keySet()) {
+							SakerPath pastechildpath = pastefilepath.append(childrelpath);
 							copiedfiles.add(LocalFileLocation.create(pastechildpath));
-							taskcontext.reportExecutionDependency(
-									new LocalFileContentDescriptorExecutionProperty(pastechildpath),
-									entry.getValue().getContentDescriptor());
+							pastechildpaths.put(childrelpath, pastechildpath);
 						}
+						reportLocalOutputFingerprint(taskcontext, pastechildpaths);
 						//remove the file location for the target path
 						copiedfiles.remove(LocalFileLocation.create(pastefilepath));
 						//XXX report with a path based function
 						taskcontext.getTaskUtilities().reportInputFileDependency(null, copyfiles.values());
 					} else {
-						file.synchronize(pathkey);
+						statistics.filesVisited(1);
+						long transferstart = System.nanoTime();
+						ContentDescriptor pastecd = linkExecutionFile(taskcontext, linker, file, pastefilepath,
+								statistics);
+						statistics.transferred(transferstart);
+						LocalFileBuildCache.invalidate(taskcontext.getExecutionContext(), pastefilepath);
+						if (pastecd == null) {
+							pastecd = file.getContentDescriptor();
+						}
 						taskcontext.reportExecutionDependency(
-								new LocalFileContentDescriptorExecutionProperty(pastefilepath),
-								file.getContentDescriptor());
+								new LocalFileContentDescriptorExecutionProperty(pastefilepath), pastecd);
 					}
-				} catch (IOException e) {
+				} catch (Exception e) {
 					throw ObjectUtils.sneakyThrow(e);
 				}
 			}
 		});
 	}
 
+	/**
+	 * Copies the children of a local directory to a local target using inner tasks.
+	 * <p>
+	 * The directories are created by the worker, then the files are partitioned in path order into shards that are
+	 * copied by concurrently running inner tasks. A shard contains files up to the shard size in total, and at most
+	 * {@link #MAX_SHARD_FILE_COUNT} files, so directories with many small files are distributed as well.
+	 */
+	private void copyShards(TaskContext taskcontext, LocalDirectoryCopier copier, SakerPath sourcedirpath,
+			SakerPath targetdirpath, NavigableMap<SakerPath, FileEntry> children, CopyStatistics statistics)
+			throws Exception {
+		List<SakerPath> files = copier.copyDirectories(sourcedirpath, targetdirpath, children, new TreeMap<>());
+		InnerTaskExecutionParameters innertaskparams = new InnerTaskExecutionParameters();
+		List<InnerTaskResults<LocalCopyShardTaskFactory.ShardOutput>> shardresults = new ArrayList<>();
+		List<SakerPath> shardfiles = new ArrayList<>();
+		long shardbytes = 0;
+		Iterator<SakerPath> it = files.iterator();
+		while (it.hasNext()) {
+			SakerPath relpath = it.next();
+			shardfiles.add(relpath);
+			shardbytes += children.get(relpath).getSize();
+			if (shardbytes >= shardSize || shardfiles.size() >= MAX_SHARD_FILE_COUNT || !it.hasNext()) {
+				LocalCopyShardTaskFactory shard = new LocalCopyShardTaskFactory(sourcedirpath, targetdirpath,
+						ImmutableUtils.makeImmutableList(shardfiles), shardbytes, mode, parallelism,
+						largeFileThreshold, verify, symlinks == SymlinkHandling.PRESERVE);
+				shardresults.add(taskcontext.startInnerTask(shard, innertaskparams));
+				shardfiles.clear();
+				shardbytes = 0;
+			}
+		}
+		Throwable failure = null;
+		for (InnerTaskResults<LocalCopyShardTaskFactory.ShardOutput> results : shardresults) {
+			InnerTaskResultHolder<LocalCopyShardTaskFactory.ShardOutput> holder = results.getNext();
+			Throwable exc;
+			if (holder == null) {
+				//the files of the shard weren't copied, the copying can't succeed
+				exc = new IllegalStateException("Failed to retrieve the result of a copy shard.");
+			} else {
+				exc = holder.getExceptionIfAny();
+			}
+			if (exc != null) {
+				if (failure == null) {
+					failure = exc;
+				} else {
+					failure.addSuppressed(exc);
+				}
+				continue;
+			}
+			LocalCopyShardTaskFactory.ShardOutput output = holder.getResult();
+			statistics.add(output.getWrittenFileCount(), output.getSkippedFileCount(), output.getWrittenByteCount());
+		}
+		if (failure != null) {
+			throw ObjectUtils.sneakyThrow(failure);
+		}
+	}
+
+	/**
+	 * Transfers the execution file to the local target path.
+	 * <p>
+	 * If the file is present on the local file system, it is linked to the target based on the copy mode. Otherwise
+	 * its contents are synchronized to the target.
+	 * 
+	 * @return The content descriptor of the created link or <code>null</code> if the file contents were synchronized.
+	 */
+	private static ContentDescriptor linkExecutionFile(TaskContext taskcontext, LocalFileLinker linker, SakerFile file,
+			SakerPath pastefilepath, CopyStatistics statistics) throws IOException {
+		ProviderHolderPathKey pastepathkey = LocalFileProvider.getInstance().getPathKey(pastefilepath);
+		if (linker.isLinking()) {
+			Path filelocalpath = taskcontext.getExecutionContext().getPathConfiguration()
+					.toLocalPath(file.getSakerPath());
+			if (filelocalpath != null) {
+				//make sure the contents are present at the link target
+				file.synchronize();
+				if (linker.link(SakerPath.valueOf(filelocalpath), pastefilepath)) {
+					statistics.fileWritten();
+					return taskcontext.invalidateGetContentDescriptor(pastepathkey);
+				}
+			}
+		}
+		if (isLocalTargetUpToDate(taskcontext, file, pastepathkey)) {
+			statistics.fileSkipped();
+			return null;
+		}
+		file.synchronize(pastepathkey);
+		statistics.fileWritten();
+		return null;
+	}
+
+	/**
+	 * Checks if the local target file already has the same contents as the execution file, based on their content
+	 * descriptors.
+	 */
+	private static boolean isLocalTargetUpToDate(TaskContext taskcontext, SakerFile file,
+			ProviderHolderPathKey pastepathkey) throws IOException {
+		ContentDescriptor pastecd = taskcontext.getExecutionContext().getContentDescriptor(pastepathkey);
+		return pastecd != null && pastecd.equals(file.getContentDescriptor());
+	}
+
+	/**
+	 * Gets the relative paths of the files that need to be synchronized to the local target directory.
+	 * <p>
+	 * The directories are always part of the result. The files are omitted if the target file is up to date.
+	 */
+	private static NavigableSet<SakerPath> getChangedLocalTargetFiles(TaskContext taskcontext,
+			SakerPath pastedirpath, NavigableMap<SakerPath, SakerFile> relativefiles, CopyStatistics statistics)
+			throws IOException {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		NavigableSet<SakerPath> result = new TreeSet<>();
+		for (Entry<SakerPath, SakerFile> entry : relativefiles.entrySet()) {
+			SakerFile file = entry.getValue();
+			if (!(file instanceof SakerDirectory)) {
+				ProviderHolderPathKey pastepathkey = localfp.getPathKey(pastedirpath.resolve(entry.getKey()));
+				if (isLocalTargetUpToDate(taskcontext, file, pastepathkey)) {
+					statistics.fileSkipped();
+					continue;
+				}
+				statistics.fileWritten();
+			} else {
+				statistics.directoryCreated();
+			}
+			result.add(entry.getKey());
+		}
+		return result;
+	}
+
+	/**
+	 * Reports an execution dependency on the current attributes of the given local output files.
+	 * <p>
+	 * The execution property is tagged uniquely, so the value is not retrieved from the property cache of the build
+	 * execution, where it could've been stored before the files were written. The files are also invalidated in the
+	 * {@link LocalFileBuildCache} for the same reason.
+	 */
+	private static LocalFilesFingerprint reportLocalOutputFingerprint(TaskContext taskcontext,
+			NavigableMap<SakerPath, SakerPath> files) throws Exception {
+		ExecutionContext executioncontext = taskcontext.getExecutionContext();
+		for (SakerPath path : files.values()) {
+			LocalFileBuildCache.invalidate(executioncontext, path);
+		}
+		LocalFilesFingerprintExecutionProperty property = new LocalFilesFingerprintExecutionProperty(
+				ImmutableUtils.unmodifiableNavigableMap(files),
+				ImmutableUtils.asUnmodifiableArrayList(taskcontext.getTaskId(), UUID.randomUUID()));
+		LocalFilesFingerprint result = property.getCurrentValue(executioncontext);
+		taskcontext.reportExecutionDependency(property, result);
+		return result;
+	}
+
+	/**
+	 * Checks if the task is rerun because any of the local output files reported in
+	 * {@link #reportLocalOutputFingerprint(TaskContext, NavigableMap)} were modified.
+	 */
+	private static boolean isLocalOutputFingerprintChanged(TaskContext taskcontext) {
+		for (BuildDelta delta : taskcontext.getNonFileDeltas()) {
+			if (delta.getType() != DeltaType.EXECUTION_PROPERTY_CHANGED) {
+				continue;
+			}
+			if (((ExecutionPropertyChangeDelta<?>) delta)
+					.getProperty() instanceof LocalFilesFingerprintExecutionProperty) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static NavigableMap<SakerPath, FileEntry> getLocalFileEntries(SakerPath directory,
+			NavigableSet<SakerPath> relativepaths) throws IOException {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		NavigableMap<SakerPath, FileEntry> result = new TreeMap<>();
+		for (SakerPath path : relativepaths) {
+			try {
+				result.put(path, localfp.getFileAttributes(directory.resolve(path)));
+			} catch (NoSuchFileException e) {
+				continue;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the entries that are not symbolic links.
+	 */
+	private static NavigableMap<SakerPath, FileEntry> removeSymbolicLinks(NavigableMap<SakerPath, FileEntry> entries) {
+		NavigableMap<SakerPath, FileEntry> result = new TreeMap<>();
+		for (Entry<SakerPath, FileEntry> entry : entries.entrySet()) {
+			if (!entry.getValue().isSymbolicLink()) {
+				result.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Deletes the target files that were copied by a previous run, but their source file no longer exist.
+	 * <p>
+	 * Directories are only deleted if they're empty, as they may contain files that weren't created by the copying.
+	 */
+	private static void deleteRemovedTargetFiles(TaskContext taskcontext, SakerPath pastedirpath,
+			NavigableSet<SakerPath> removedpaths) throws IOException {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		for (SakerPath relpath : removedpaths) {
+			SakerPath path = pastedirpath.resolve(relpath);
+			try {
+				Files.deleteIfExists(LocalFileProvider.toRealPath(path));
+			} catch (DirectoryNotEmptyException e) {
+				continue;
+			}
+			taskcontext.invalidateGetContentDescriptor(localfp.getPathKey(path));
+		}
+	}
+
 	private static final class NonDeletingFixedDirectoryVisitPredicate extends FixedDirectoryVisitPredicate {
 		private static final long serialVersionUID = 1L;
 
@@ -387,11 +1088,125 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 		}
 	}
 
+	private static DirectoryVisitPredicate createWildcardsDirectoryVisitPredicate(NavigableSet<WildcardPath> wildcards,
+			NavigableSet<WildcardPath> excludes) {
+		WildcardSetMatcher matcher = WildcardSetMatcher.compile(wildcards, excludes);
+		if (matcher == null) {
+			return new WildcardsDirectoryVisitPredicate(wildcards, excludes);
+		}
+		return new CompiledWildcardsDirectoryVisitPredicate(wildcards, excludes, matcher);
+	}
+
+	/**
+	 * Directory visit predicate that uses a {@link WildcardSetMatcher} for matching the files.
+	 * <p>
+	 * The predicates are shared between the directories that have the same matching state.
+	 */
+	private static final class CompiledWildcardsDirectoryVisitPredicate
+			implements DirectoryVisitPredicate, Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		private NavigableSet<WildcardPath> wildcards;
+		private NavigableSet<WildcardPath> excludes;
+		private transient WildcardSetMatcher.State state;
+		private transient ConcurrentMap<WildcardSetMatcher.State, CompiledWildcardsDirectoryVisitPredicate> predicates;
+
+		/**
+		 * For {@link Externalizable}.
+		 */
+		public CompiledWildcardsDirectoryVisitPredicate() {
+		}
+
+		CompiledWildcardsDirectoryVisitPredicate(NavigableSet<WildcardPath> wildcards,
+				NavigableSet<WildcardPath> excludes, WildcardSetMatcher matcher) {
+			this(wildcards, excludes, matcher.getRootState(), new ConcurrentHashMap<>());
+		}
+
+		private CompiledWildcardsDirectoryVisitPredicate(NavigableSet<WildcardPath> wildcards,
+				NavigableSet<WildcardPath> excludes, WildcardSetMatcher.State state,
+				ConcurrentMap<WildcardSetMatcher.State, CompiledWildcardsDirectoryVisitPredicate> predicates) {
+			this.wildcards = wildcards;
+			this.excludes = excludes;
+			this.state = state;
+			this.predicates = predicates;
+		}
+
+		@Override
+		public DirectoryVisitPredicate directoryVisitor(String name, SakerDirectory directory) {
+			WildcardSetMatcher.State nstate = state.next(name);
+			if (nstate == null || nstate.isExcluded() || !nstate.isFinishable()) {
+				return null;
+			}
+			return predicates.computeIfAbsent(nstate,
+					s -> new CompiledWildcardsDirectoryVisitPredicate(wildcards, excludes, s, predicates));
+		}
+
+		@Override
+		public boolean visitFile(String name, SakerFile file) {
+			return state.includes(name);
+		}
+
+		@Override
+		public boolean visitDirectory(String name, SakerDirectory directory) {
+			return state.includes(name);
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			SerialUtils.writeExternalCollection(out, wildcards);
+			SerialUtils.writeExternalCollection(out, excludes);
+			out.writeObject(state.getStateBits());
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			wildcards = SerialUtils.readExternalSortedImmutableNavigableSet(in);
+			excludes = SerialUtils.readExternalSortedImmutableNavigableSet(in);
+			long[] statebits = (long[]) in.readObject();
+			WildcardSetMatcher matcher = WildcardSetMatcher.compile(wildcards, excludes);
+			if (matcher == null) {
+				throw new IOException("Failed to compile wildcards: " + wildcards);
+			}
+			state = matcher.getState(statebits);
+			predicates = new ConcurrentHashMap<>();
+		}
+
+		@Override
+		public int hashCode() {
+			return ((wildcards == null) ? 0 : wildcards.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			CompiledWildcardsDirectoryVisitPredicate other = (CompiledWildcardsDirectoryVisitPredicate) obj;
+			if (excludes == null) {
+				if (other.excludes != null)
+					return false;
+			} else if (!excludes.equals(other.excludes))
+				return false;
+			if (wildcards == null) {
+				if (other.wildcards != null)
+					return false;
+			} else if (!wildcards.equals(other.wildcards))
+				return false;
+			if (!Arrays.equals(state.getStateBits(), other.state.getStateBits()))
+				return false;
+			return true;
+		}
+	}
+
 	private static final class WildcardsDirectoryVisitPredicate implements DirectoryVisitPredicate, Externalizable {
 		private static final long serialVersionUID = 1L;
 
 		private SakerPath path;
 		private NavigableSet<WildcardPath> wildcards;
+		private NavigableSet<WildcardPath> excludes;
 
 		/**
 		 * For {@link Externalizable}.
@@ -399,21 +1214,27 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 		public WildcardsDirectoryVisitPredicate() {
 		}
 
-		public WildcardsDirectoryVisitPredicate(NavigableSet<WildcardPath> wildcards) {
-			this(SakerPath.EMPTY, wildcards);
+		public WildcardsDirectoryVisitPredicate(NavigableSet<WildcardPath> wildcards,
+				NavigableSet<WildcardPath> excludes) {
+			this(SakerPath.EMPTY, wildcards, excludes);
 		}
 
-		private WildcardsDirectoryVisitPredicate(SakerPath path, NavigableSet<WildcardPath> wildcards) {
+		private WildcardsDirectoryVisitPredicate(SakerPath path, NavigableSet<WildcardPath> wildcards,
+				NavigableSet<WildcardPath> excludes) {
 			this.path = path;
 			this.wildcards = wildcards;
+			this.excludes = excludes;
 		}
 
 		@Override
 		public DirectoryVisitPredicate directoryVisitor(String name, SakerDirectory directory) {
 			SakerPath fpath = this.path.resolve(name);
+			if (isExcluded(fpath)) {
+				return null;
+			}
 			for (WildcardPath wc : wildcards) {
 				if (wc.finishable(fpath)) {
-					return new WildcardsDirectoryVisitPredicate(fpath, wildcards);
+					return new WildcardsDirectoryVisitPredicate(fpath, wildcards, excludes);
 				}
 			}
 			return null;
@@ -422,6 +1243,10 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 		@Override
 		public boolean visitFile(String name, SakerFile file) {
 			SakerPath fpath = this.path.resolve(name);
+			//the parent directories are already checked for exclusion in directoryVisitor
+			if (isExcluded(fpath)) {
+				return false;
+			}
 			for (WildcardPath wc : wildcards) {
 				if (wc.includes(fpath)) {
 					return true;
@@ -435,22 +1260,37 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 			return visitFile(name, directory);
 		}
 
+		private boolean isExcluded(SakerPath fpath) {
+			if (excludes == null) {
+				return false;
+			}
+			for (WildcardPath wc : excludes) {
+				if (wc.includes(fpath)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
 		@Override
 		public void writeExternal(ObjectOutput out) throws IOException {
 			out.writeObject(path);
 			SerialUtils.writeExternalCollection(out, wildcards);
+			SerialUtils.writeExternalCollection(out, excludes);
 		}
 
 		@Override
 		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 			path = (SakerPath) in.readObject();
 			wildcards = SerialUtils.readExternalSortedImmutableNavigableSet(in);
+			excludes = SerialUtils.readExternalSortedImmutableNavigableSet(in);
 		}
 
 		@Override
 		public int hashCode() {
 			final int prime = 31;
 			int result = 1;
+			result = prime * result + ((excludes == null) ? 0 : excludes.hashCode());
 			result = prime * result + ((path == null) ? 0 : path.hashCode());
 			result = prime * result + ((wildcards == null) ? 0 : wildcards.hashCode());
 			return result;
@@ -465,6 +1305,11 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 			if (getClass() != obj.getClass())
 				return false;
 			WildcardsDirectoryVisitPredicate other = (WildcardsDirectoryVisitPredicate) obj;
+			if (excludes == null) {
+				if (other.excludes != null)
+					return false;
+			} else if (!excludes.equals(other.excludes))
+				return false;
 			if (path == null) {
 				if (other.path != null)
 					return false;
@@ -480,7 +1325,8 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 	}
 
 	private static void copyExecutionFileToExecutionPath(TaskContext taskcontext, SakerPath filepath, SakerFile file,
-			SakerPath pastefilepath, Collection<WildcardPath> wildcards, Collection<FileLocation> copiedfiles) {
+			SakerPath pastefilepath, Collection<WildcardPath> wildcards, Collection<WildcardPath> excludes,
+			Collection<FileLocation> copiedfiles, CopyStatistics statistics) {
 		SakerPath pasteparentdirpath = pastefilepath.getParent();
 		SakerDirectory pastedir = taskcontext.getTaskUtilities()
 				.resolveDirectoryAtPathCreateIfAbsent(pasteparentdirpath);
@@ -490,6 +1336,8 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 		}
 		SakerFile addedfile;
 		TaskExecutionUtilities taskutils = taskcontext.getTaskUtilities();
+		//the output dependencies of the copied children, reported in bulk after the synchronization
+		NavigableMap<SakerPath, ContentDescriptor> childoutputs = null;
 		if (file instanceof SakerDirectory) {
 			SakerDirectory targetdir = pastedir.getDirectoryCreateIfAbsent(pastefilepath.getFileName());
 			if (targetdir == null) {
@@ -497,30 +1345,11 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 						+ " (a file with the same name is already present)");
 			}
 			NavigableMap<SakerPath, SakerFile> copyfiles = collectReportDirectoryCopyFiles(taskcontext, filepath,
-					wildcards);
-			for (Entry<SakerPath, SakerFile> entry : copyfiles.entrySet()) {
-				SakerPath relativecopypath = filepath.relativize(entry.getKey());
-				SakerDirectory entryparentdir = taskutils.resolveDirectoryAtRelativePathCreateIfAbsent(targetdir,
-						relativecopypath.getParent());
-				if (entryparentdir == null) {
-					throw new RuntimeException("Failed to copy file to target path: "
-							+ pastefilepath.resolve(entry.getKey()) + " (parent directory cannot be created)");
-				}
-				copiedfiles.add(ExecutionFileLocation.create(pastefilepath.append(relativecopypath)));
-				SakerFile copyfile = entry.getValue();
-				if (copyfile instanceof SakerDirectory) {
-					taskutils.reportOutputFileDependency(null, entryparentdir);
-					continue;
-				}
-				DelegateSakerFile addeddelegatefile = new DelegateSakerFile(copyfile);
-				if (entryparentdir.addOverwriteIfNotDirectory(addeddelegatefile) != null) {
-					throw new RuntimeException("Failed to copy file to target path: "
-							+ pastefilepath.resolve(entry.getKey()) + " (a directory is already present at path)");
-				}
-				taskutils.reportOutputFileDependency(null, addeddelegatefile);
-			}
-			//remove the file location for the target path
-			copiedfiles.remove(ExecutionFileLocation.create(pastefilepath));
+					wildcards, excludes);
+			statistics.filesVisited(copyfiles.size() + 1);
+			statistics.directoryCreated();
+			childoutputs = copyExecutionDirectoryChildren(filepath, targetdir, pastefilepath, copyfiles,
+					copiedfiles, statistics);
 			addedfile = targetdir;
 		} else {
 			addedfile = new DelegateSakerFile(pastefilepath.getFileName(), file);
@@ -528,17 +1357,113 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 				throw new RuntimeException("Failed to copy file to target path: " + pastefilepath
 						+ " (a directory with the same name is already present)");
 			}
+			statistics.filesVisited(1);
+			statistics.fileWritten();
 		}
+		long transferstart = System.nanoTime();
 		try {
 			addedfile.synchronize();
 		} catch (IOException e) {
 			throw ObjectUtils.sneakyThrow(e);
 		}
+		statistics.transferred(transferstart);
+		if (childoutputs != null) {
+			taskutils.reportOutputFileDependency(null, childoutputs);
+		}
 		taskutils.reportOutputFileDependency(null, addedfile);
 	}
 
-	private static NavigableMap<SakerPath, SakerFile> collectReportDirectoryCopyFiles(TaskContext taskcontext,
-			SakerPath filepath, Collection<WildcardPath> wildcards) {
+	/**
+	 * Adds the files to copy to the target directory.
+	 * <p>
+	 * The files are iterated in path order, so the parent directories are visited before their children. The stack of
+	 * the current target directories is kept, so each target directory is only resolved once, instead of resolving the
+	 * parent directory of each file from the target directory.
+	 * 
+	 * @return The content descriptors of the copied children mapped to their target paths.
+	 */
+	private static NavigableMap<SakerPath, ContentDescriptor> copyExecutionDirectoryChildren(SakerPath filepath,
+			SakerDirectory targetdir, SakerPath pastefilepath, NavigableMap<SakerPath, SakerFile> copyfiles,
+			Collection<FileLocation> copiedfiles, CopyStatistics statistics) {
+		NavigableMap<SakerPath, ContentDescriptor> result = new TreeMap<>();
+		List<SakerPath> dirpathstack = new ArrayList<>();
+		List<SakerDirectory> dirstack = new ArrayList<>();
+		for (Entry<SakerPath, SakerFile> entry : copyfiles.entrySet()) {
+			SakerPath relativecopypath = filepath.relativize(entry.getKey());
+			int parentnamecount = relativecopypath.getNameCount() - 1;
+			int stacksize = dirpathstack.size();
+			while (stacksize > 0 && (stacksize > parentnamecount
+					|| !relativecopypath.startsWith(dirpathstack.get(stacksize - 1)))) {
+				--stacksize;
+				dirpathstack.remove(stacksize);
+				dirstack.remove(stacksize);
+			}
+			SakerPath pastechildpath = pastefilepath.resolve(relativecopypath);
+			SakerDirectory parentdir = stacksize == 0 ? targetdir : dirstack.get(stacksize - 1);
+			//the parent directories may be missing from the entries if they're not included by the wildcards
+			for (; stacksize < parentnamecount; ++stacksize) {
+				parentdir = parentdir.getDirectoryCreateIfAbsent(relativecopypath.getName(stacksize));
+				if (parentdir == null) {
+					throw new RuntimeException("Failed to copy file to target path: " + pastechildpath
+							+ " (parent directory cannot be created)");
+				}
+				dirpathstack.add(relativecopypath.subPath(0, stacksize + 1));
+				dirstack.add(parentdir);
+			}
+			copiedfiles.add(ExecutionFileLocation.create(pastechildpath));
+			SakerFile copyfile = entry.getValue();
+			if (copyfile instanceof SakerDirectory) {
+				SakerDirectory childdir = parentdir.getDirectoryCreateIfAbsent(copyfile.getName());
+				if (childdir == null) {
+					throw new RuntimeException("Failed to copy directory to target path: " + pastechildpath
+							+ " (a file with the same name is already present)");
+				}
+				dirpathstack.add(relativecopypath);
+				dirstack.add(childdir);
+				result.put(pastechildpath, DirectoryContentDescriptor.INSTANCE);
+				statistics.directoryCreated();
+				continue;
+			}
+			if (parentdir.addOverwriteIfNotDirectory(new DelegateSakerFile(copyfile)) != null) {
+				throw new RuntimeException("Failed to copy file to target path: " + pastechildpath
+						+ " (a directory is already present at path)");
+			}
+			//the delegate file has the same contents as the copied file
+			result.put(pastechildpath, copyfile.getContentDescriptor());
+			statistics.fileWritten();
+		}
+		//remove the file location for the target path
+		copiedfiles.remove(ExecutionFileLocation.create(pastefilepath));
+		return result;
+	}
+
+	static NavigableMap<SakerPath, SakerFile> collectReportDirectoryCopyFiles(TaskContext taskcontext,
+			SakerPath filepath, Collection<WildcardPath> wildcards, Collection<WildcardPath> excludes) {
+		if (excludes != null) {
+			//only report input dependencies for the files that are not excluded
+			//so modifications of the excluded files don't cause the task to rerun
+			TaskExecutionUtilities taskutils = taskcontext.getTaskUtilities();
+			NavigableMap<SakerPath, SakerFile> collectedfiles;
+			if (ALL_FILES_WILDCARD_SET.equals(wildcards)) {
+				collectedfiles = taskutils.collectFilesReportAdditionDependency(null,
+						RecursiveFileCollectionStrategy.create(filepath));
+			} else {
+				collectedfiles = taskutils.collectFilesReportAdditionDependency(null,
+						createWildcardCollectionStrategies(filepath, wildcards));
+			}
+			NavigableMap<SakerPath, SakerFile> copyfiles = new TreeMap<>();
+			WildcardSetMatcher excludematcher = WildcardSetMatcher.compile(Collections.emptySet(), excludes);
+			for (Entry<SakerPath, SakerFile> entry : collectedfiles.entrySet()) {
+				SakerPath relpath = filepath.relativize(entry.getKey());
+				boolean excluded = excludematcher == null ? WildcardSetMatcher.includesPathOrParent(excludes, relpath)
+						: excludematcher.isExcluded(relpath);
+				if (!excluded) {
+					copyfiles.put(entry.getKey(), entry.getValue());
+				}
+			}
+			taskutils.reportInputFileDependency(null, copyfiles.values());
+			return copyfiles;
+		}
 		NavigableMap<SakerPath, SakerFile> copyfiles;
 		if (ALL_FILES_WILDCARD_SET.equals(wildcards)) {
 			copyfiles = taskcontext.getTaskUtilities().collectFilesReportInputFileAndAdditionDependency(null,
@@ -565,6 +1490,15 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 		out.writeObject(sourceLocation);
 		out.writeObject(targetLocation);
 		SerialUtils.writeExternalCollection(out, wildcards);
+		out.writeInt(parallelism);
+		out.writeObject(mode);
+		SerialUtils.writeExternalCollection(out, excludes);
+		SerialUtils.writeExternalCollection(out, sourceLocations);
+		out.writeLong(shardSize);
+		out.writeLong(largeFileThreshold);
+		out.writeObject(archiveFormat);
+		out.writeBoolean(verify);
+		out.writeObject(symlinks);
 	}
 
 	@Override
@@ -572,14 +1506,32 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 		sourceLocation = (FileLocation) in.readObject();
 		targetLocation = (FileLocation) in.readObject();
 		wildcards = SerialUtils.readExternalImmutableNavigableSet(in);
+		parallelism = in.readInt();
+		mode = (CopyMode) in.readObject();
+		excludes = SerialUtils.readExternalImmutableNavigableSet(in);
+		sourceLocations = SerialUtils.readExternalImmutableList(in);
+		shardSize = in.readLong();
+		largeFileThreshold = in.readLong();
+		archiveFormat = (ArchiveFormat) in.readObject();
+		verify = in.readBoolean();
+		symlinks = (SymlinkHandling) in.readObject();
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + ((archiveFormat == null) ? 0 : archiveFormat.hashCode());
+		result = prime * result + ((excludes == null) ? 0 : excludes.hashCode());
+		result = prime * result + ((mode == null) ? 0 : mode.hashCode());
+		result = prime * result + parallelism;
+		result = prime * result + (int) (shardSize ^ (shardSize >>> 32));
+		result = prime * result + (int) (largeFileThreshold ^ (largeFileThreshold >>> 32));
 		result = prime * result + ((sourceLocation == null) ? 0 : sourceLocation.hashCode());
+		result = prime * result + ((sourceLocations == null) ? 0 : sourceLocations.hashCode());
+		result = prime * result + ((symlinks == null) ? 0 : symlinks.hashCode());
 		result = prime * result + ((targetLocation == null) ? 0 : targetLocation.hashCode());
+		result = prime * result + (verify ? 1231 : 1237);
 		result = prime * result + ((wildcards == null) ? 0 : wildcards.hashCode());
 		return result;
 	}
@@ -593,16 +1545,40 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 		if (getClass() != obj.getClass())
 			return false;
 		CopyFileWorkerTaskFactory other = (CopyFileWorkerTaskFactory) obj;
+		if (archiveFormat != other.archiveFormat)
+			return false;
+		if (excludes == null) {
+			if (other.excludes != null)
+				return false;
+		} else if (!excludes.equals(other.excludes))
+			return false;
+		if (mode != other.mode)
+			return false;
+		if (parallelism != other.parallelism)
+			return false;
+		if (shardSize != other.shardSize)
+			return false;
+		if (largeFileThreshold != other.largeFileThreshold)
+			return false;
 		if (sourceLocation == null) {
 			if (other.sourceLocation != null)
 				return false;
 		} else if (!sourceLocation.equals(other.sourceLocation))
 			return false;
+		if (sourceLocations == null) {
+			if (other.sourceLocations != null)
+				return false;
+		} else if (!sourceLocations.equals(other.sourceLocations))
+			return false;
+		if (symlinks != other.symlinks)
+			return false;
 		if (targetLocation == null) {
 			if (other.targetLocation != null)
 				return false;
 		} else if (!targetLocation.equals(other.targetLocation))
 			return false;
+		if (verify != other.verify)
+			return false;
 		if (wildcards == null) {
 			if (other.wildcards != null)
 				return false;
@@ -613,8 +1589,12 @@ public class CopyFileWorkerTaskFactory implements TaskFactory<Object>, Task<Obje
 
 	@Override
 	public String toString() {
-		return getClass().getSimpleName() + "[sourceLocation=" + sourceLocation + ", targetLocation=" + targetLocation
-				+ ", wildcards=" + wildcards + "]";
+		return getClass().getSimpleName() + "[sourceLocation=" + sourceLocation + ", sourceLocations=" + sourceLocations
+				+ ", targetLocation=" + targetLocation
+				+ ", wildcards=" + wildcards + ", parallelism=" + parallelism + ", mode=" + mode
+				+ ", excludes=" + excludes + ", shardSize=" + shardSize + ", largeFileThreshold=" + largeFileThreshold
+				+ ", archiveFormat=" + archiveFormat + ", verify=" + verify
+				+ ", symlinks=" + symlinks + "]";
 	}
 
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.copy;
+
+import java.util.Locale;
+
+/**
+ * Specifies how the contents of a file is transferred to a local copy target.
+ * <p>
+ * If the file system doesn't support the specified mode for a given file, the contents of the file is copied.
+ */
+public enum CopyMode {
+	/**
+	 * The contents of the files are copied.
+	 */
+	COPY,
+	/**
+	 * The target files are created as hard links to the source files.
+	 */
+	HARDLINK,
+	/**
+	 * The target files are created as copy-on-write clones of the source files if the file system supports it.
+	 */
+	REFLINK,
+	/**
+	 * The target files are created as symbolic links that point to the source files.
+	 */
+	SYMLINK,
+	/**
+	 * The target files are created as hard links to the files with the same contents in a content addressed store in
+	 * the build directory.
+	 * <p>
+	 * Files with the same contents are only written once, even if they are copied to multiple targets.
+	 */
+	DEDUPLICATE;
+
+	/**
+	 * Gets the copy mode for the given task option value.
+	 * <p>
+	 * The argument is compared to the enumeration names in a case insensitive manner.
+	 * 
+	 * @param option
+	 *            The option value.
+	 * @return The copy mode or <code>null</code> if the argument doesn't denote one.
+	 */
+	public static CopyMode fromOption(String option) {
+		if (option == null) {
+			return null;
+		}
+		try {
+			return valueOf(option.toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
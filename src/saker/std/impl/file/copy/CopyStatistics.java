@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.copy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the number of files that were visited, written or skipped during a copy operation.
+ * <p>
+ * The counters are thread safe, as the files may be copied concurrently.
+ * <p>
+ * The time spent transferring the files is measured by the callers around the operations that write to the target, so
+ * concurrently copied files are only counted once. The remaining time of the copying is considered to be planning,
+ * e.g. collecting the files and reporting the dependencies.
+ */
+final class CopyStatistics {
+	private final AtomicInteger visitedFileCount = new AtomicInteger();
+	private final AtomicInteger writtenFileCount = new AtomicInteger();
+	private final AtomicInteger skippedFileCount = new AtomicInteger();
+	private final AtomicInteger createdDirectoryCount = new AtomicInteger();
+	private final AtomicLong writtenByteCount = new AtomicLong();
+	private final AtomicLong transferNanos = new AtomicLong();
+
+	/**
+	 * Records that the specified number of source files and directories were examined to determine what to copy.
+	 * 
+	 * @param count
+	 *            The number of visited files.
+	 */
+	public void filesVisited(int count) {
+		visitedFileCount.addAndGet(count);
+	}
+
+	/**
+	 * Records that a file was written to the target location.
+	 * <p>
+	 * Used when the size of the file isn't known without accessing it again, so it isn't counted in the written bytes.
+	 */
+	public void fileWritten() {
+		writtenFileCount.incrementAndGet();
+	}
+
+	/**
+	 * Records that a file with the given size was written to the target location.
+	 * 
+	 * @param bytecount
+	 *            The number of bytes written.
+	 */
+	public void fileWritten(long bytecount) {
+		writtenFileCount.incrementAndGet();
+		writtenByteCount.addAndGet(bytecount);
+	}
+
+	/**
+	 * Records that the target file already had the same contents as the source, so it wasn't written.
+	 */
+	public void fileSkipped() {
+		skippedFileCount.incrementAndGet();
+	}
+
+	/**
+	 * Records that a directory was created at the target location.
+	 * <p>
+	 * The directory may already have existed, as the copying doesn't check for it before creating it.
+	 */
+	public void directoryCreated() {
+		createdDirectoryCount.incrementAndGet();
+	}
+
+	/**
+	 * Adds the time spent writing the files to the target location.
+	 * 
+	 * @param starttime
+	 *            The {@linkplain System#nanoTime() nano time} when the transfer started.
+	 */
+	public void transferred(long starttime) {
+		transferNanos.addAndGet(System.nanoTime() - starttime);
+	}
+
+	/**
+	 * Adds the file counts that were collected separately, e.g. by an inner task.
+	 * 
+	 * @param writtencount
+	 *            The number of written files.
+	 * @param skippedcount
+	 *            The number of skipped files.
+	 * @param bytecount
+	 *            The number of written bytes.
+	 */
+	public void add(int writtencount, int skippedcount, long bytecount) {
+		writtenFileCount.addAndGet(writtencount);
+		skippedFileCount.addAndGet(skippedcount);
+		writtenByteCount.addAndGet(bytecount);
+	}
+
+	public int getVisitedFileCount() {
+		return visitedFileCount.get();
+	}
+
+	public int getWrittenFileCount() {
+		return writtenFileCount.get();
+	}
+
+	public int getSkippedFileCount() {
+		return skippedFileCount.get();
+	}
+
+	public int getCreatedDirectoryCount() {
+		return createdDirectoryCount.get();
+	}
+
+	public long getWrittenByteCount() {
+		return writtenByteCount.get();
+	}
+
+	public long getTransferNanos() {
+		return transferNanos.get();
+	}
+
+	/**
+	 * Converts the statistics to values that can be displayed in the build trace.
+	 * 
+	 * @param totalnanos
+	 *            The total time spent copying in nanoseconds.
+	 * @return The build trace values.
+	 */
+	public Map<String, Object> toBuildTraceValues(long totalnanos) {
+		long transfernanos = transferNanos.get();
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("Files visited", visitedFileCount.get());
+		result.put("Files written", writtenFileCount.get());
+		result.put("Files skipped", skippedFileCount.get());
+		result.put("Directories created", createdDirectoryCount.get());
+		result.put("Bytes written", writtenByteCount.get());
+		result.put("Planning time (ms)", TimeUnit.NANOSECONDS.toMillis(Math.max(totalnanos - transfernanos, 0)));
+		result.put("Transfer time (ms)", TimeUnit.NANOSECONDS.toMillis(transfernanos));
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[visitedFileCount=" + visitedFileCount + ", writtenFileCount="
+				+ writtenFileCount + ", skippedFileCount=" + skippedFileCount + ", createdDirectoryCount="
+				+ createdDirectoryCount + ", writtenByteCount=" + writtenByteCount + ", transferNanos="
+				+ transferNanos + "]";
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.copy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.TaskContext;
+import saker.build.thirdparty.saker.util.StringUtils;
+import saker.std.impl.file.property.LocalFileDigestCache;
+
+/**
+ * Content addressed store of files in the build directory, used by the {@link CopyMode#DEDUPLICATE} copy mode.
+ * <p>
+ * The files are stored by the SHA-256 hash of their contents. The copy targets are created as hard links to the stored
+ * files, so files with the same contents are only written once, and use the disk space only once.
+ * <p>
+ * The size of the store is bounded. If it grows larger, the least recently linked entries are deleted when the store is
+ * first used in a build. Deleting an entry doesn't affect the targets that were linked to it, they keep the contents.
+ * The maximum size can be set in bytes using the {@value #PARAMETER_MAX_SIZE} execution user parameter.
+ * <p>
+ * The modification time of the entries cannot be used to track their usage, as it is shared with the linked targets.
+ * Creating a hard link updates the status change time of the file instead, which is used if available.
+ */
+final class LocalContentStore {
+	/**
+	 * The execution user parameter that specifies the maximum size of the store in bytes.
+	 */
+	public static final String PARAMETER_MAX_SIZE = "saker.std.file.copy.content.store.max.size";
+
+	private static final Map<ExecutionContext, LocalContentStore> STORES = new WeakHashMap<>();
+
+	private static final String STORE_DIRECTORY_NAME = "std.file.copy.content";
+	private static final String TEMP_FILE_PREFIX = ".tmp";
+	private static final long DEFAULT_MAX_STORE_SIZE = 2L * 1024 * 1024 * 1024;
+	/**
+	 * Temporary files are left in the store if the build is interrupted. They are deleted after this time.
+	 */
+	private static final long TEMP_FILE_EXPIRY_MILLIS = TimeUnit.HOURS.toMillis(1);
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Path directory;
+
+	private LocalContentStore(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Gets the content store in the build directory of the execution.
+	 * <p>
+	 * The same store is returned for the tasks of a build. When the store is first used in a build, its least recently
+	 * linked entries are deleted if it exceeds the maximum size. The eviction is best effort, I/O errors are ignored.
+	 * 
+	 * @param taskcontext
+	 *            The task context.
+	 * @return The store or <code>null</code> if the build directory is not on the local file system.
+	 */
+	public static LocalContentStore get(TaskContext taskcontext) {
+		ExecutionContext executioncontext = taskcontext.getExecutionContext();
+		synchronized (STORES) {
+			LocalContentStore store = STORES.get(executioncontext);
+			if (store != null) {
+				return store;
+			}
+			SakerPath builddirpath = executioncontext.getBuildDirectoryPath();
+			if (builddirpath == null) {
+				return null;
+			}
+			Path builddir = executioncontext.getPathConfiguration().toLocalPath(builddirpath);
+			if (builddir == null) {
+				return null;
+			}
+			store = new LocalContentStore(builddir.resolve(STORE_DIRECTORY_NAME));
+			//evict while holding the lock, so no entries are linked concurrently in this build
+			store.evict(getMaxStoreSize(executioncontext));
+			STORES.put(executioncontext, store);
+			return store;
+		}
+	}
+
+	/**
+	 * Gets the store entry that has the same contents as the given file.
+	 * <p>
+	 * If the digest of the file is cached, the existing entry is returned without reading the file. Otherwise the file
+	 * is hashed while it is copied to a temporary file in the store, which is then moved to its place if there's no
+	 * such entry yet.
+	 * 
+	 * @param sourcepath
+	 *            The local path of the regular file.
+	 * @param sourceattrs
+	 *            The attributes of the file.
+	 * @return The path of the store entry.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public Path getEntry(SakerPath sourcepath, BasicFileAttributes sourceattrs) throws IOException {
+		byte[] cacheddigest = LocalFileDigestCache.getCachedDigest(sourcepath, sourceattrs);
+		if (cacheddigest != null) {
+			Path entry = getEntryPath(cacheddigest);
+			if (isValidEntry(entry, sourceattrs.size())) {
+				return entry;
+			}
+		}
+		Path source = LocalFileProvider.toRealPath(sourcepath);
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, TEMP_FILE_PREFIX, null);
+		try {
+			MessageDigest digest = LocalFileDigestCache.createMessageDigest();
+			long size;
+			try (InputStream in = Files.newInputStream(source);
+					OutputStream out = Files.newOutputStream(temp)) {
+				size = transfer(in, out, digest);
+			}
+			byte[] hash = digest.digest();
+			//only cache the digest if the source wasn't modified while it was read
+			BasicFileAttributes afterattrs = Files.readAttributes(source, BasicFileAttributes.class);
+			if (LocalFileDigestCache.isSameAttributes(sourceattrs, afterattrs)) {
+				LocalFileDigestCache.putDigest(sourcepath, afterattrs, hash);
+			}
+			Path entry = getEntryPath(hash);
+			if (!isValidEntry(entry, size)) {
+				Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			//else the temporary file is discarded
+			return entry;
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static long getMaxStoreSize(ExecutionContext executioncontext) {
+		String param = executioncontext.getUserParameters().get(PARAMETER_MAX_SIZE);
+		if (param == null) {
+			return DEFAULT_MAX_STORE_SIZE;
+		}
+		try {
+			return Long.parseLong(param);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + PARAMETER_MAX_SIZE + " execution user parameter: " + param,
+					e);
+		}
+	}
+
+	private Path getEntryPath(byte[] digest) {
+		return directory.resolve(StringUtils.toHexString(digest));
+	}
+
+	private static boolean isValidEntry(Path entry, long size) throws IOException {
+		BasicFileAttributes entryattrs = readAttributesOrNull(entry);
+		//the size is checked in case the entry was modified through a target
+		return entryattrs != null && entryattrs.isRegularFile() && entryattrs.size() == size;
+	}
+
+	private void evict(long maxsize) {
+		List<StoreEntry> entries = new ArrayList<>();
+		long totalsize = 0;
+		long now = System.currentTimeMillis();
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory)) {
+			for (Path path : ds) {
+				BasicFileAttributes attrs = readAttributesOrNull(path);
+				if (attrs == null || !attrs.isRegularFile()) {
+					continue;
+				}
+				if (path.getFileName().toString().startsWith(TEMP_FILE_PREFIX)) {
+					if (attrs.lastModifiedTime().toMillis() + TEMP_FILE_EXPIRY_MILLIS < now) {
+						Files.deleteIfExists(path);
+					}
+					continue;
+				}
+				entries.add(new StoreEntry(path, attrs.size(), getLastLinkedMillis(path, attrs)));
+				totalsize += attrs.size();
+			}
+		} catch (IOException e) {
+			//the store doesn't exist, or it is concurrently modified
+			return;
+		}
+		if (totalsize <= maxsize) {
+			return;
+		}
+		entries.sort(Comparator.comparingLong(e -> e.lastLinkedMillis));
+		for (StoreEntry entry : entries) {
+			if (totalsize <= maxsize) {
+				break;
+			}
+			try {
+				Files.deleteIfExists(entry.path);
+			} catch (IOException e) {
+				continue;
+			}
+			totalsize -= entry.size;
+		}
+	}
+
+	private static long getLastLinkedMillis(Path path, BasicFileAttributes attrs) {
+		try {
+			Object ctime = Files.getAttribute(path, "unix:ctime", LinkOption.NOFOLLOW_LINKS);
+			if (ctime instanceof FileTime) {
+				return ((FileTime) ctime).toMillis();
+			}
+		} catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+			//not available on this file system
+		}
+		return attrs.creationTime().toMillis();
+	}
+
+	private static long transfer(InputStream in, OutputStream out, MessageDigest digest) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long result = 0;
+		for (int read; (read = in.read(buffer)) > 0;) {
+			digest.update(buffer, 0, read);
+			out.write(buffer, 0, read);
+			result += read;
+		}
+		return result;
+	}
+
+	private static BasicFileAttributes readAttributesOrNull(Path path) throws IOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	private static final class StoreEntry {
+		final Path path;
+		final long size;
+		final long lastLinkedMillis;
+
+		public StoreEntry(Path path, long size, long lastLinkedMillis) {
+			this.path = path;
+			this.size = size;
+			this.lastLinkedMillis = lastLinkedMillis;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.copy;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.List;
+
+import saker.build.file.path.SakerPath;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.task.Task;
+import saker.build.task.TaskContext;
+import saker.build.task.TaskFactory;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+import saker.std.impl.util.IOComputationTokens;
+
+/**
+ * Inner task that copies a shard of the files of a local directory to a local target directory.
+ * <p>
+ * The parent directories of the files must be created before the shard is started. The shards request computation
+ * tokens based on the size of their files, so the build system can distribute them over the available cores.
+ * <p>
+ * The task is not remote dispatchable, as the local paths refer to the file system of the coordinator machine.
+ */
+final class LocalCopyShardTaskFactory
+		implements TaskFactory<LocalCopyShardTaskFactory.ShardOutput>, Task<LocalCopyShardTaskFactory.ShardOutput>,
+		Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private SakerPath sourceDirectory;
+	private SakerPath targetDirectory;
+	private List<SakerPath> files;
+	private long byteCount;
+	private CopyMode mode;
+	private int parallelism;
+	private long chunkedCopyThreshold;
+	private boolean verify;
+	private boolean preserveSymlinks;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public LocalCopyShardTaskFactory() {
+	}
+
+	public LocalCopyShardTaskFactory(SakerPath sourceDirectory, SakerPath targetDirectory, List<SakerPath> files,
+			long byteCount, CopyMode mode, int parallelism, long chunkedCopyThreshold, boolean verify,
+			boolean preserveSymlinks) {
+		this.sourceDirectory = sourceDirectory;
+		this.targetDirectory = targetDirectory;
+		this.files = files;
+		this.byteCount = byteCount;
+		this.mode = mode;
+		this.parallelism = parallelism;
+		this.chunkedCopyThreshold = chunkedCopyThreshold;
+		this.verify = verify;
+		this.preserveSymlinks = preserveSymlinks;
+	}
+
+	@Override
+	public int getRequestedComputationTokenCount() {
+		return IOComputationTokens.getComputationTokenCount(files.size(), byteCount, 1);
+	}
+
+	@Override
+	public Task<? extends ShardOutput> createTask(ExecutionContext executioncontext) {
+		return this;
+	}
+
+	@Override
+	public ShardOutput run(TaskContext taskcontext) throws Exception {
+		CopyStatistics statistics = new CopyStatistics();
+		//the files are copied sequentially, the threads are only used for copying large files in chunks
+		LocalDirectoryCopier copier = new LocalDirectoryCopier(taskcontext, parallelism,
+				new LocalFileLinker(taskcontext, mode, preserveSymlinks), statistics, chunkedCopyThreshold, verify);
+		for (SakerPath relpath : files) {
+			copier.copyChildFile(sourceDirectory.resolve(relpath), targetDirectory.resolve(relpath));
+		}
+		return new ShardOutput(statistics.getWrittenFileCount(), statistics.getSkippedFileCount(),
+				statistics.getWrittenByteCount());
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeObject(sourceDirectory);
+		out.writeObject(targetDirectory);
+		SerialUtils.writeExternalCollection(out, files);
+		out.writeLong(byteCount);
+		out.writeObject(mode);
+		out.writeInt(parallelism);
+		out.writeLong(chunkedCopyThreshold);
+		out.writeBoolean(verify);
+		out.writeBoolean(preserveSymlinks);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		sourceDirectory = (SakerPath) in.readObject();
+		targetDirectory = (SakerPath) in.readObject();
+		files = SerialUtils.readExternalImmutableList(in);
+		byteCount = in.readLong();
+		mode = (CopyMode) in.readObject();
+		parallelism = in.readInt();
+		chunkedCopyThreshold = in.readLong();
+		verify = in.readBoolean();
+		preserveSymlinks = in.readBoolean();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((files == null) ? 0 : files.hashCode());
+		result = prime * result + parallelism;
+		result = prime * result + ((sourceDirectory == null) ? 0 : sourceDirectory.hashCode());
+		result = prime * result + ((targetDirectory == null) ? 0 : targetDirectory.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LocalCopyShardTaskFactory other = (LocalCopyShardTaskFactory) obj;
+		if (byteCount != other.byteCount)
+			return false;
+		if (chunkedCopyThreshold != other.chunkedCopyThreshold)
+			return false;
+		if (files == null) {
+			if (other.files != null)
+				return false;
+		} else if (!files.equals(other.files))
+			return false;
+		if (mode != other.mode)
+			return false;
+		if (parallelism != other.parallelism)
+			return false;
+		if (sourceDirectory == null) {
+			if (other.sourceDirectory != null)
+				return false;
+		} else if (!sourceDirectory.equals(other.sourceDirectory))
+			return false;
+		if (targetDirectory == null) {
+			if (other.targetDirectory != null)
+				return false;
+		} else if (!targetDirectory.equals(other.targetDirectory))
+			return false;
+		if (verify != other.verify)
+			return false;
+		if (preserveSymlinks != other.preserveSymlinks)
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[sourceDirectory=" + sourceDirectory + ", targetDirectory="
+				+ targetDirectory + ", files=" + files.size() + ", byteCount=" + byteCount + ", mode=" + mode
+				+ ", parallelism=" + parallelism + ", chunkedCopyThreshold=" + chunkedCopyThreshold + ", verify="
+				+ verify + ", preserveSymlinks=" + preserveSymlinks + "]";
+	}
+
+	/**
+	 * The number of files that were written and skipped by a shard, and the number of bytes written.
+	 */
+	public static final class ShardOutput implements Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		private int writtenFileCount;
+		private int skippedFileCount;
+		private long writtenByteCount;
+
+		/**
+		 * For {@link Externalizable}.
+		 */
+		public ShardOutput() {
+		}
+
+		public ShardOutput(int writtenFileCount, int skippedFileCount, long writtenByteCount) {
+			this.writtenFileCount = writtenFileCount;
+			this.skippedFileCount = skippedFileCount;
+			this.writtenByteCount = writtenByteCount;
+		}
+
+		public int getWrittenFileCount() {
+			return writtenFileCount;
+		}
+
+		public int getSkippedFileCount() {
+			return skippedFileCount;
+		}
+
+		public long getWrittenByteCount() {
+			return writtenByteCount;
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			out.writeInt(writtenFileCount);
+			out.writeInt(skippedFileCount);
+			out.writeLong(writtenByteCount);
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			writtenFileCount = in.readInt();
+			skippedFileCount = in.readInt();
+			writtenByteCount = in.readLong();
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "[writtenFileCount=" + writtenFileCount + ", skippedFileCount="
+					+ skippedFileCount + ", writtenByteCount=" + writtenByteCount + "]";
+		}
+	}
+}
@@ -0,0 +1,534 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.copy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import saker.build.file.content.ContentDescriptor;
+import saker.build.file.content.DirectoryContentDescriptor;
+import saker.build.file.path.ProviderHolderPathKey;
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.task.TaskContext;
+import saker.build.task.TaskExecutionUtilities;
+import saker.build.thirdparty.saker.util.function.ThrowingConsumer;
+import saker.build.thirdparty.saker.util.thread.ThreadUtils;
+import saker.std.impl.file.property.LocalFileDigestCache;
+
+/**
+ * Copies the children of a local directory to another local directory using multiple threads.
+ * <p>
+ * The directories are created first in path order on the calling thread, then the files are copied concurrently using
+ * a bounded number of threads.
+ * <p>
+ * The files are created as links if the associated {@link LocalFileLinker} is configured that way. The symbolic links
+ * in the source directory are recreated as links if the linker preserves them.
+ * <p>
+ * Target files that already have the same contents as their source are not written, so their modification times
+ * don't change. The contents are compared using the cached digests of the files if available, otherwise only files
+ * under a size limit are compared byte by byte.
+ * <p>
+ * Files that are larger than the chunked copy threshold are preallocated at the target, and copied in fixed size
+ * chunks using positional reads and writes. The chunks are copied concurrently if the file is not copied concurrently
+ * with other files, so the number of copying threads is bounded by the thread count.
+ * <p>
+ * If verification is enabled, the digests of the files are computed while they are copied, and checked against the
+ * digests of the sources. The digests are used as the content descriptors of the targets.
+ */
+class LocalDirectoryCopier {
+	/**
+	 * The default minimum size of files that are copied in chunks.
+	 */
+	public static final long DEFAULT_CHUNKED_COPY_THRESHOLD = 1024L * 1024 * 1024;
+
+	/**
+	 * The maximum size of files which are compared byte by byte to determine if the target needs to be written.
+	 * <p>
+	 * Comparing reads both files, so for larger files that have changed, it would be significantly more expensive
+	 * than copying them.
+	 */
+	private static final long SAME_CONTENTS_COMPARE_LIMIT = 4L * 1024 * 1024;
+	private static final int COMPARE_BUFFER_SIZE = 64 * 1024;
+	private static final long CHUNK_SIZE = 64L * 1024 * 1024;
+	private static final int CHUNK_BUFFER_SIZE = 1024 * 1024;
+
+	private final TaskContext taskContext;
+	private final int threadCount;
+	private final LocalFileLinker linker;
+	private final CopyStatistics statistics;
+	private final long chunkedCopyThreshold;
+	private final boolean verify;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param taskcontext
+	 *            The task context to use for synchronization.
+	 * @param threadcount
+	 *            The maximum number of threads to use for copying files. If less than 1, the number of available
+	 *            processors is used.
+	 * @param linker
+	 *            The linker to use for the files.
+	 * @param statistics
+	 *            The statistics to record the written and skipped files in.
+	 * @param chunkedcopythreshold
+	 *            The minimum size of files that are copied in chunks using multiple threads.
+	 * @param verify
+	 *            Whether the copied files should be verified using their digests.
+	 */
+	public LocalDirectoryCopier(TaskContext taskcontext, int threadcount, LocalFileLinker linker,
+			CopyStatistics statistics, long chunkedcopythreshold, boolean verify) {
+		this.taskContext = taskcontext;
+		this.threadCount = threadcount < 1 ? Runtime.getRuntime().availableProcessors() : threadcount;
+		this.linker = linker;
+		this.statistics = statistics;
+		this.chunkedCopyThreshold = chunkedcopythreshold;
+		this.verify = verify;
+	}
+
+	/**
+	 * Copies the specified children of the source directory to the target directory.
+	 *
+	 * @param sourcedirpath
+	 *            The local path of the source directory.
+	 * @param targetdirpath
+	 *            The local path of the target directory.
+	 * @param children
+	 *            The children to copy, relative to the source directory.
+	 * @return The results of the copied children mapped to their relative paths.
+	 * @throws Exception
+	 *             If the copying fails.
+	 */
+	public NavigableMap<SakerPath, CopyResult> copy(SakerPath sourcedirpath, SakerPath targetdirpath,
+			NavigableMap<SakerPath, ? extends BasicFileAttributes> children) throws Exception {
+		NavigableMap<SakerPath, CopyResult> result = new ConcurrentSkipListMap<>();
+		List<SakerPath> files = copyDirectories(sourcedirpath, targetdirpath, children, result);
+		runFiles(files, (relpath, chunkthreadcount) -> {
+			result.put(relpath, copyChildFile(sourcedirpath.resolve(relpath), targetdirpath.resolve(relpath),
+					chunkthreadcount));
+		});
+		return result;
+	}
+
+	/**
+	 * Copies the directories of the specified children, and creates the parent directories of the files.
+	 * <p>
+	 * The files are not copied, but their relative paths are returned, so the caller can copy them concurrently
+	 * without racing for their parent directories.
+	 *
+	 * @param sourcedirpath
+	 *            The local path of the source directory.
+	 * @param targetdirpath
+	 *            The local path of the target directory.
+	 * @param children
+	 *            The children to copy, relative to the source directory.
+	 * @param result
+	 *            The map to put the results of the copied directories to.
+	 * @return The relative paths of the files in the children, in path order.
+	 * @throws Exception
+	 *             If the copying fails.
+	 */
+	public List<SakerPath> copyDirectories(SakerPath sourcedirpath, SakerPath targetdirpath,
+			NavigableMap<SakerPath, ? extends BasicFileAttributes> children, Map<SakerPath, CopyResult> result)
+			throws Exception {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		List<SakerPath> files = new ArrayList<>();
+		NavigableSet<SakerPath> fileparentdirs = new TreeSet<>();
+		//the children are ordered, so the parent directories are synchronized before their children
+		for (Entry<SakerPath, ? extends BasicFileAttributes> entry : children.entrySet()) {
+			SakerPath relpath = entry.getKey();
+			if (entry.getValue().isDirectory()) {
+				result.put(relpath,
+						copyFile(sourcedirpath.resolve(relpath), targetdirpath.resolve(relpath), threadCount));
+			} else {
+				files.add(relpath);
+				SakerPath parent = relpath.getParent();
+				if (parent != null && !children.containsKey(parent)) {
+					fileparentdirs.add(parent);
+				}
+			}
+		}
+		//create the parent directories which weren't part of the children (e.g. due to wildcard filtering)
+		//so the concurrent file writes don't race for them
+		for (SakerPath parent : fileparentdirs) {
+			localfp.createDirectories(targetdirpath.resolve(parent));
+			statistics.directoryCreated();
+		}
+		return files;
+	}
+
+	/**
+	 * Copies the specified files to their target paths.
+	 * <p>
+	 * The parent directories of the target paths must exist.
+	 * 
+	 * @param files
+	 *            The local source paths mapped to their local target paths.
+	 * @return The results of the copying mapped to the target paths.
+	 * @throws Exception
+	 *             If the copying fails.
+	 */
+	public NavigableMap<SakerPath, CopyResult> copyFiles(Map<SakerPath, SakerPath> files) throws Exception {
+		NavigableMap<SakerPath, CopyResult> result = new ConcurrentSkipListMap<>();
+		runFiles(files.entrySet(), (entry, chunkthreadcount) -> {
+			result.put(entry.getValue(), copyFile(entry.getKey(), entry.getValue(), chunkthreadcount));
+		});
+		return result;
+	}
+
+	private <T> void runFiles(Collection<T> items, FileCopyAction<? super T> action) throws Exception {
+		if (threadCount == 1 || items.size() <= 1) {
+			for (T item : items) {
+				action.copy(item, threadCount);
+			}
+		} else {
+			//the threads are already used for copying the files, so large files are not copied by additional threads
+			ThreadUtils.parallelRunner().setThreadCount(Math.min(threadCount, items.size()))
+					.setNamePrefix("std.file.copy-").runItems(items, item -> action.copy(item, 1));
+		}
+	}
+
+	/**
+	 * Copies a file that was found in a source directory.
+	 * <p>
+	 * Unlike {@link #copyFile(SakerPath, SakerPath)}, symbolic links are recreated at the target if the linker
+	 * preserves them.
+	 * 
+	 * @param sourcepath
+	 *            The local path of the source.
+	 * @param targetpath
+	 *            The local path of the target.
+	 * @return The result of the copying.
+	 * @throws Exception
+	 *             If the copying fails.
+	 */
+	public CopyResult copyChildFile(SakerPath sourcepath, SakerPath targetpath) throws Exception {
+		return copyChildFile(sourcepath, targetpath, threadCount);
+	}
+
+	private CopyResult copyChildFile(SakerPath sourcepath, SakerPath targetpath, int chunkthreadcount)
+			throws Exception {
+		if (linker.copySymbolicLink(sourcepath, targetpath)) {
+			//the link is described by the build system based on the file it points to
+			ContentDescriptor targetcd = taskContext
+					.invalidateGetContentDescriptor(LocalFileProvider.getInstance().getPathKey(targetpath));
+			statistics.fileWritten();
+			return new CopyResult(targetcd, targetcd);
+		}
+		return copyFile(sourcepath, targetpath, chunkthreadcount);
+	}
+
+	/**
+	 * Copies a single file or directory.
+	 * <p>
+	 * If the source is a directory, only the directory is created at the target path, its children are not copied.
+	 * 
+	 * @param sourcepath
+	 *            The local path of the source.
+	 * @param targetpath
+	 *            The local path of the target.
+	 * @return The result of the copying.
+	 * @throws Exception
+	 *             If the copying fails.
+	 */
+	public CopyResult copyFile(SakerPath sourcepath, SakerPath targetpath) throws Exception {
+		return copyFile(sourcepath, targetpath, threadCount);
+	}
+
+	private CopyResult copyFile(SakerPath sourcepath, SakerPath targetpath, int chunkthreadcount) throws Exception {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		ProviderHolderPathKey sourcepathkey = localfp.getPathKey(sourcepath);
+		ProviderHolderPathKey targetpathkey = localfp.getPathKey(targetpath);
+		if (linker.link(sourcepath, targetpath)) {
+			ContentDescriptor sourcecd = taskContext.getExecutionContext().getContentDescriptor(sourcepathkey);
+			ContentDescriptor targetcd = taskContext.invalidateGetContentDescriptor(targetpathkey);
+			statistics.fileWritten();
+			return new CopyResult(sourcecd, targetcd);
+		}
+		BasicFileAttributes sourceattrs = readAttributesOrNull(LocalFileProvider.toRealPath(sourcepath));
+		if (isSameFileContents(sourceattrs, sourcepath, targetpath)) {
+			ContentDescriptor sourcecd = taskContext.getExecutionContext().getContentDescriptor(sourcepathkey);
+			ContentDescriptor targetcd = taskContext.getExecutionContext().getContentDescriptor(targetpathkey);
+			statistics.fileSkipped();
+			return new CopyResult(sourcecd, targetcd);
+		}
+		if (verify && sourceattrs != null && sourceattrs.isRegularFile()) {
+			ContentDescriptor targetcd = copyVerified(sourcepath, targetpath, sourceattrs);
+			ContentDescriptor sourcecd = taskContext.getExecutionContext().getContentDescriptor(sourcepathkey);
+			return new CopyResult(sourcecd, targetcd);
+		}
+		if (sourceattrs != null && sourceattrs.isRegularFile() && sourceattrs.size() >= chunkedCopyThreshold
+				&& copyChunked(sourcepath, targetpath, sourceattrs.size(), chunkthreadcount)) {
+			ContentDescriptor sourcecd = taskContext.getExecutionContext().getContentDescriptor(sourcepathkey);
+			ContentDescriptor targetcd = taskContext.invalidateGetContentDescriptor(targetpathkey);
+			statistics.fileWritten(sourceattrs.size());
+			return new CopyResult(sourcecd, targetcd);
+		}
+		ContentDescriptor cd = taskContext.getTaskUtilities().synchronize(sourcepathkey, targetpathkey,
+				TaskExecutionUtilities.SYNCHRONIZE_FLAG_NO_OVERWRITE_DIRECTORY);
+		if (DirectoryContentDescriptor.INSTANCE.equals(cd)) {
+			statistics.directoryCreated();
+		} else {
+			statistics.fileWritten(sourceattrs == null ? 0 : sourceattrs.size());
+		}
+		return new CopyResult(cd, cd);
+	}
+
+	/**
+	 * Copies a regular file while computing the digest of the transferred bytes.
+	 * <p>
+	 * The digest is computed from the same bytes that are written to the target. The copying fails if the source was
+	 * modified meanwhile, if the size of the target differs from the written byte count, or if a digest of the source
+	 * is cached from a previous copying, and it differs from the computed digest. The source is only read once.
+	 * <p>
+	 * The digest is recorded for the source and the target.
+	 * 
+	 * @return The content descriptor of the target.
+	 */
+	private ContentDescriptor copyVerified(SakerPath sourcepath, SakerPath targetpath,
+			BasicFileAttributes sourceattrs) throws IOException {
+		Path source = LocalFileProvider.toRealPath(sourcepath);
+		Path target = LocalFileProvider.toRealPath(targetpath);
+		byte[] sourcedigest = LocalFileDigestCache.getCachedDigest(sourcepath, sourceattrs);
+		try {
+			BasicFileAttributes prevtargetattrs = Files.readAttributes(target, BasicFileAttributes.class,
+					LinkOption.NOFOLLOW_LINKS);
+			if (prevtargetattrs.isDirectory()) {
+				throw new IOException("Failed to copy file, a directory is present at: " + targetpath);
+			}
+			//delete the previous target instead of overwriting it,
+			//so the contents aren't written through a link left by a previous copy
+			Files.delete(target);
+		} catch (NoSuchFileException e) {
+			//no previous target
+		}
+		MessageDigest digest = LocalFileDigestCache.createMessageDigest();
+		long written = 0;
+		try (InputStream in = Files.newInputStream(source);
+				OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW,
+						StandardOpenOption.WRITE)) {
+			byte[] buffer = new byte[COMPARE_BUFFER_SIZE];
+			for (int read; (read = in.read(buffer)) > 0;) {
+				digest.update(buffer, 0, read);
+				out.write(buffer, 0, read);
+				written += read;
+			}
+		}
+		byte[] hash = digest.digest();
+		BasicFileAttributes aftersourceattrs = Files.readAttributes(source, BasicFileAttributes.class);
+		if (written != sourceattrs.size() || aftersourceattrs.size() != sourceattrs.size()
+				|| !aftersourceattrs.lastModifiedTime().equals(sourceattrs.lastModifiedTime())) {
+			throw new IOException("Copy source was modified during copying: " + sourcepath);
+		}
+		if (sourcedigest != null && !Arrays.equals(sourcedigest, hash)) {
+			throw new IOException("Copied contents don't match the digest of the source: " + sourcepath);
+		}
+		BasicFileAttributes targetattrs = Files.readAttributes(target, BasicFileAttributes.class);
+		if (targetattrs.size() != written) {
+			throw new IOException("Copy target size doesn't match the copied byte count: " + targetpath);
+		}
+		LocalFileDigestCache.putDigest(sourcepath, aftersourceattrs, hash);
+		LocalFileDigestCache.putDigest(targetpath, targetattrs, hash);
+		statistics.fileWritten(written);
+		return taskContext.invalidateGetContentDescriptor(LocalFileProvider.getInstance().getPathKey(targetpath));
+	}
+
+	/**
+	 * Copies the contents of a large file in chunks using the given number of threads.
+	 * <p>
+	 * The target is preallocated, then the chunks are transferred using positional reads and writes on shared file
+	 * channels, which is safe to use from multiple threads.
+	 * 
+	 * @return <code>false</code> if the target is a directory, in which case the synchronization should fail
+	 *             appropriately.
+	 */
+	private static boolean copyChunked(SakerPath sourcepath, SakerPath targetpath, long size, int threadcount)
+			throws Exception {
+		Path source = LocalFileProvider.toRealPath(sourcepath);
+		Path target = LocalFileProvider.toRealPath(targetpath);
+		if (Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS)) {
+			return false;
+		}
+		List<Long> chunkpositions = new ArrayList<>();
+		for (long pos = 0; pos < size; pos += CHUNK_SIZE) {
+			chunkpositions.add(pos);
+		}
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				RandomAccessFile out = new RandomAccessFile(target.toFile(), "rw")) {
+			out.setLength(size);
+			FileChannel outchannel = out.getChannel();
+			ThrowingConsumer<Long> chunkcopier = position -> copyChunk(in, outchannel, position,
+					Math.min(CHUNK_SIZE, size - position));
+			if (threadcount == 1) {
+				for (Long position : chunkpositions) {
+					chunkcopier.accept(position);
+				}
+			} else {
+				ThreadUtils.parallelRunner().setThreadCount(Math.min(threadcount, chunkpositions.size()))
+						.setNamePrefix("std.file.copy-chunk-").runItems(chunkpositions, chunkcopier);
+			}
+		}
+		return true;
+	}
+
+	private static void copyChunk(FileChannel in, FileChannel out, long position, long count) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(CHUNK_BUFFER_SIZE, count));
+		long end = position + count;
+		long pos = position;
+		while (pos < end) {
+			buffer.clear();
+			if (end - pos < buffer.capacity()) {
+				buffer.limit((int) (end - pos));
+			}
+			int read = in.read(buffer, pos);
+			if (read < 0) {
+				throw new IOException("File was truncated during copying at position: " + pos);
+			}
+			buffer.flip();
+			long writepos = pos;
+			while (buffer.hasRemaining()) {
+				writepos += out.write(buffer, writepos);
+			}
+			pos += read;
+		}
+	}
+
+	/**
+	 * Checks if the source and target are regular files with the same contents.
+	 * <p>
+	 * The contents are only compared if the files have the same size. If the digests of both files are cached, they
+	 * are compared. Otherwise the files are compared byte by byte if they are not larger than
+	 * {@link #SAME_CONTENTS_COMPARE_LIMIT}. Reading a small target is cheaper than writing it, and leaving it
+	 * untouched keeps its modification time stable.
+	 */
+	private static boolean isSameFileContents(BasicFileAttributes sourceattrs, SakerPath sourcepath,
+			SakerPath targetpath) throws IOException {
+		if (sourceattrs == null || !sourceattrs.isRegularFile()) {
+			return false;
+		}
+		Path source = LocalFileProvider.toRealPath(sourcepath);
+		Path target = LocalFileProvider.toRealPath(targetpath);
+		BasicFileAttributes targetattrs;
+		try {
+			targetattrs = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+		if (!targetattrs.isRegularFile() || sourceattrs.size() != targetattrs.size()) {
+			return false;
+		}
+		byte[] sourcedigest = LocalFileDigestCache.getCachedDigest(sourcepath, sourceattrs);
+		if (sourcedigest != null) {
+			byte[] targetdigest = LocalFileDigestCache.getCachedDigest(targetpath, targetattrs);
+			if (targetdigest != null) {
+				return Arrays.equals(sourcedigest, targetdigest);
+			}
+		}
+		if (sourceattrs.size() > SAME_CONTENTS_COMPARE_LIMIT) {
+			return false;
+		}
+		try (InputStream sourcein = Files.newInputStream(source);
+				InputStream targetin = Files.newInputStream(target)) {
+			byte[] sourcebuf = new byte[COMPARE_BUFFER_SIZE];
+			byte[] targetbuf = new byte[COMPARE_BUFFER_SIZE];
+			while (true) {
+				int sourceread = readFully(sourcein, sourcebuf);
+				int targetread = readFully(targetin, targetbuf);
+				if (sourceread != targetread) {
+					return false;
+				}
+				if (sourceread <= 0) {
+					return true;
+				}
+				for (int i = 0; i < sourceread; i++) {
+					if (sourcebuf[i] != targetbuf[i]) {
+						return false;
+					}
+				}
+			}
+		}
+	}
+
+	private static BasicFileAttributes readAttributesOrNull(Path path) throws IOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	private static int readFully(InputStream is, byte[] buffer) throws IOException {
+		int count = 0;
+		while (count < buffer.length) {
+			int read = is.read(buffer, count, buffer.length - count);
+			if (read < 0) {
+				break;
+			}
+			count += read;
+		}
+		return count;
+	}
+
+	@FunctionalInterface
+	private interface FileCopyAction<T> {
+		public void copy(T item, int chunkthreadcount) throws Exception;
+	}
+
+	/**
+	 * The content descriptors of a copied file.
+	 * <p>
+	 * The content descriptors of the source and target may differ if the target was created as a link.
+	 */
+	public static final class CopyResult {
+		private final ContentDescriptor sourceContents;
+		private final ContentDescriptor targetContents;
+
+		public CopyResult(ContentDescriptor sourceContents, ContentDescriptor targetContents) {
+			this.sourceContents = sourceContents;
+			this.targetContents = targetContents;
+		}
+
+		public ContentDescriptor getSourceContents() {
+			return sourceContents;
+		}
+
+		public ContentDescriptor getTargetContents() {
+			return targetContents;
+		}
+	}
+}
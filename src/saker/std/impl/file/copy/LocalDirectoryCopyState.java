@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.copy;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.FileEntry;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+
+/**
+ * The state of a local directory that was copied to a local target by a previous run of the copy task.
+ * <p>
+ * The state contains the attributes of the source and target files at the time they were copied, so the next run of
+ * the task can determine which files need to be copied again.
+ */
+final class LocalDirectoryCopyState implements Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private NavigableMap<SakerPath, FileEntry> sourceEntries;
+	private NavigableMap<SakerPath, FileEntry> targetEntries;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public LocalDirectoryCopyState() {
+	}
+
+	public LocalDirectoryCopyState(NavigableMap<SakerPath, FileEntry> sourceEntries,
+			NavigableMap<SakerPath, FileEntry> targetEntries) {
+		this.sourceEntries = sourceEntries;
+		this.targetEntries = targetEntries;
+	}
+
+	/**
+	 * Gets the task output tag that the state is stored with.
+	 * 
+	 * @param sourcepath
+	 *            The source directory path.
+	 * @param targetpath
+	 *            The target directory path.
+	 * @return The tag.
+	 */
+	public static Object getTaskOutputTag(SakerPath sourcepath, SakerPath targetpath) {
+		return ImmutableUtils.asUnmodifiableArrayList(LocalDirectoryCopyState.class.getName(), sourcepath,
+				targetpath);
+	}
+
+	/**
+	 * Collects the children that need to be copied based on the current attributes of the source files.
+	 * 
+	 * @param currentsourceentries
+	 *            The current attributes of the source files.
+	 * @param currenttargetentries
+	 *            The current attributes of the previously copied target files, or <code>null</code> if they are
+	 *            known to be unchanged.
+	 * @return The children to copy.
+	 */
+	public NavigableMap<SakerPath, FileEntry> getChangedEntries(NavigableMap<SakerPath, FileEntry> currentsourceentries,
+			NavigableMap<SakerPath, FileEntry> currenttargetentries) {
+		NavigableMap<SakerPath, FileEntry> result = new TreeMap<>();
+		for (Entry<SakerPath, FileEntry> entry : currentsourceentries.entrySet()) {
+			SakerPath path = entry.getKey();
+			FileEntry attrs = entry.getValue();
+			if (!isSameAttributes(attrs, sourceEntries.get(path))) {
+				result.put(path, attrs);
+				continue;
+			}
+			if (currenttargetentries != null
+					&& !isSameAttributes(targetEntries.get(path), currenttargetentries.get(path))) {
+				result.put(path, attrs);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Collects the children that were previously copied, but are no longer present in the source.
+	 * 
+	 * @param currentsourceentries
+	 *            The current attributes of the source files.
+	 * @return The paths of the removed children in descending order, so children precede their parents.
+	 */
+	public NavigableSet<SakerPath> getRemovedPaths(NavigableMap<SakerPath, FileEntry> currentsourceentries) {
+		NavigableSet<SakerPath> result = new TreeSet<>();
+		for (SakerPath path : sourceEntries.keySet()) {
+			if (!currentsourceentries.containsKey(path)) {
+				result.add(path);
+			}
+		}
+		return result.descendingSet();
+	}
+
+	public NavigableMap<SakerPath, FileEntry> getTargetEntries() {
+		return targetEntries;
+	}
+
+	private static boolean isSameAttributes(FileEntry l, FileEntry r) {
+		if (l == null || r == null) {
+			return l == r;
+		}
+		if (l.isDirectory() || r.isDirectory()) {
+			return l.isDirectory() == r.isDirectory();
+		}
+		return l.getType() == r.getType() && l.getSize() == r.getSize()
+				&& l.getLastModifiedMillis() == r.getLastModifiedMillis();
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		SerialUtils.writeExternalMap(out, sourceEntries);
+		SerialUtils.writeExternalMap(out, targetEntries);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		sourceEntries = SerialUtils.readExternalSortedImmutableNavigableMap(in);
+		targetEntries = SerialUtils.readExternalSortedImmutableNavigableMap(in);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[sourceEntries=" + sourceEntries.size() + ", targetEntries="
+				+ targetEntries.size() + "]";
+	}
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.copy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Map;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.task.TaskContext;
+
+/**
+ * Creates local copy targets as links to the source files based on the {@linkplain CopyMode copy mode}.
+ * <p>
+ * If the linking fails for any reason, the caller should fall back to copying the contents of the file.
+ * <p>
+ * The class also takes care of removing links that were placed at the target locations by previous copy operations,
+ * so writing the contents to the target doesn't modify the source file.
+ * <p>
+ * If configured, the linker also recreates the symbolic links found in the source directories as links at the targets.
+ */
+public final class LocalFileLinker {
+	/**
+	 * Cloning is performed by an external process, which is slower than simply copying small files.
+	 */
+	private static final long REFLINK_MIN_FILE_SIZE = 1024 * 1024;
+	/**
+	 * The maximum number of characters of the cloning process output that is examined.
+	 */
+	private static final int CLONE_OUTPUT_MAX_LENGTH = 4096;
+
+	private static final int CLONE_RESULT_CLONED = 0;
+	/**
+	 * The file couldn't be cloned, but other files may be.
+	 */
+	private static final int CLONE_RESULT_FAILED = 1;
+	/**
+	 * Cloning is not supported by the operating system or the file system.
+	 */
+	private static final int CLONE_RESULT_UNSUPPORTED = 2;
+
+	private final TaskContext taskContext;
+	private final CopyMode mode;
+	private final boolean preserveSymlinks;
+	private volatile boolean linkingUnsupported;
+	private LocalContentStore contentStore;
+
+	public LocalFileLinker(TaskContext taskcontext, CopyMode mode) {
+		this(taskcontext, mode, false);
+	}
+
+	public LocalFileLinker(TaskContext taskcontext, CopyMode mode, boolean preservesymlinks) {
+		this.taskContext = taskcontext;
+		this.mode = mode == null ? CopyMode.COPY : mode;
+		this.preserveSymlinks = preservesymlinks;
+	}
+
+	public CopyMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Checks if the linker may create links.
+	 * 
+	 * @return <code>true</code> if the copy mode is not {@link CopyMode#COPY}.
+	 */
+	public boolean isLinking() {
+		return mode != CopyMode.COPY && !linkingUnsupported;
+	}
+
+	/**
+	 * Creates the target file as a link of the source file.
+	 * <p>
+	 * If this method returns <code>false</code>, the target location is prepared for having the contents of the source
+	 * written to it.
+	 * 
+	 * @param sourcepath
+	 *            The local path of the source file.
+	 * @param targetpath
+	 *            The local path of the target file.
+	 * @return <code>true</code> if the target is a link (or clone) of the source, <code>false</code> if the contents
+	 *             of the file should be copied.
+	 * @throws IOException
+	 *             If the target location cannot be prepared.
+	 */
+	public boolean link(SakerPath sourcepath, SakerPath targetpath) throws IOException {
+		Path target = LocalFileProvider.toRealPath(targetpath);
+		if (!isLinking()) {
+			deleteLinkAt(targetpath, target);
+			return false;
+		}
+		Path source = LocalFileProvider.toRealPath(sourcepath);
+		BasicFileAttributes sourceattrs;
+		try {
+			sourceattrs = Files.readAttributes(source, BasicFileAttributes.class);
+		} catch (IOException e) {
+			//let the synchronization handle it
+			return false;
+		}
+		if (!sourceattrs.isRegularFile()
+				|| (mode == CopyMode.REFLINK && sourceattrs.size() < REFLINK_MIN_FILE_SIZE)) {
+			deleteLinkAt(targetpath, target);
+			return false;
+		}
+		if (mode == CopyMode.DEDUPLICATE) {
+			//link the target to the stored file with the same contents instead of the source
+			source = getContentStoreEntry(sourcepath, sourceattrs);
+			if (source == null) {
+				deleteLinkAt(targetpath, target);
+				return false;
+			}
+		}
+		BasicFileAttributes targetattrs = readAttributesNoFollow(target);
+		if (targetattrs != null) {
+			if (targetattrs.isDirectory()) {
+				//the synchronization will fail appropriately
+				return false;
+			}
+			if (isLinkedTo(target, targetattrs, source)) {
+				return true;
+			}
+			Files.delete(target);
+		} else {
+			Files.createDirectories(target.getParent());
+		}
+		try {
+			switch (mode) {
+				case HARDLINK:
+				case DEDUPLICATE: {
+					Files.createLink(target, source);
+					return true;
+				}
+				case SYMLINK: {
+					Files.createSymbolicLink(target, source);
+					return true;
+				}
+				case REFLINK: {
+					int cloneresult = cloneFile(source, target);
+					if (cloneresult == CLONE_RESULT_CLONED) {
+						return true;
+					}
+					if (cloneresult == CLONE_RESULT_UNSUPPORTED) {
+						linkingUnsupported = true;
+					}
+					//else only copy this file, e.g. the target is on a different mount
+					break;
+				}
+				default: {
+					break;
+				}
+			}
+		} catch (UnsupportedOperationException e) {
+			linkingUnsupported = true;
+		} catch (IOException e) {
+			//e.g. hard links between different file stores, or no privilege to create symbolic links
+		}
+		//fall back to copying
+		//the previous target may've been deleted, make sure the build system doesn't use its cached contents
+		taskContext.invalidateGetContentDescriptor(LocalFileProvider.getInstance().getPathKey(targetpath));
+		return false;
+	}
+
+	/**
+	 * Deletes the file at the target path if it is a link.
+	 * <p>
+	 * Should be called before the contents of a file is written to a target that may have been linked previously.
+	 * 
+	 * @param targetpath
+	 *            The local path of the target file.
+	 * @throws IOException
+	 *             If the link cannot be deleted.
+	 */
+	public void unlink(SakerPath targetpath) throws IOException {
+		deleteLinkAt(targetpath, LocalFileProvider.toRealPath(targetpath));
+	}
+
+	/**
+	 * Recreates the source at the target if it is a symbolic link and the linker preserves symbolic links.
+	 * <p>
+	 * The target link has the same link target as the source, which is not resolved. Relative links stay relative.
+	 * 
+	 * @param sourcepath
+	 *            The local path of the source file.
+	 * @param targetpath
+	 *            The local path of the target file.
+	 * @return <code>true</code> if the source is a symbolic link, and it was recreated at the target.
+	 * @throws IOException
+	 *             If the link cannot be created.
+	 */
+	public boolean copySymbolicLink(SakerPath sourcepath, SakerPath targetpath) throws IOException {
+		if (!preserveSymlinks) {
+			return false;
+		}
+		Path source = LocalFileProvider.toRealPath(sourcepath);
+		if (!Files.isSymbolicLink(source)) {
+			return false;
+		}
+		Path linktarget = Files.readSymbolicLink(source);
+		Path target = LocalFileProvider.toRealPath(targetpath);
+		BasicFileAttributes targetattrs = readAttributesNoFollow(target);
+		if (targetattrs != null) {
+			if (targetattrs.isSymbolicLink() && linktarget.equals(Files.readSymbolicLink(target))) {
+				return true;
+			}
+			if (targetattrs.isDirectory()) {
+				throw new IOException("Failed to copy symbolic link, a directory is present at: " + targetpath);
+			}
+			Files.delete(target);
+		} else {
+			Files.createDirectories(target.getParent());
+		}
+		Files.createSymbolicLink(target, linktarget);
+		return true;
+	}
+
+	private boolean isLinkedTo(Path target, BasicFileAttributes targetattrs, Path source) throws IOException {
+		switch (mode) {
+			case HARDLINK:
+			case DEDUPLICATE: {
+				return !targetattrs.isSymbolicLink() && Files.isSameFile(target, source);
+			}
+			case SYMLINK: {
+				return targetattrs.isSymbolicLink() && source.equals(Files.readSymbolicLink(target));
+			}
+			default: {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Gets the content store entry for the source file.
+	 * 
+	 * @return The path of the entry, or <code>null</code> if the content store is not available.
+	 */
+	private Path getContentStoreEntry(SakerPath sourcepath, BasicFileAttributes sourceattrs) {
+		LocalContentStore store;
+		synchronized (this) {
+			store = contentStore;
+			if (store == null) {
+				store = LocalContentStore.get(taskContext);
+				if (store == null) {
+					linkingUnsupported = true;
+					return null;
+				}
+				contentStore = store;
+			}
+		}
+		try {
+			return store.getEntry(sourcepath, sourceattrs);
+		} catch (IOException e) {
+			//let the synchronization handle it
+			return null;
+		}
+	}
+
+	/**
+	 * Clones the source file to the target using the copy command of the operating system.
+	 * <p>
+	 * If the command fails, its output is examined to determine if cloning is unsupported, or only this file couldn't
+	 * be cloned.
+	 * 
+	 * @return One of the <code>CLONE_RESULT_*</code> constants.
+	 */
+	private static int cloneFile(Path source, Path target) throws IOException {
+		String os = System.getProperty("os.name", "").toLowerCase(Locale.ENGLISH);
+		ProcessBuilder pb;
+		if (os.contains("linux")) {
+			pb = new ProcessBuilder("cp", "--reflink=always", source.toString(), target.toString());
+		} else if (os.contains("mac")) {
+			pb = new ProcessBuilder("cp", "-c", source.toString(), target.toString());
+		} else {
+			return CLONE_RESULT_UNSUPPORTED;
+		}
+		pb.redirectErrorStream(true);
+		Process proc = pb.start();
+		StringBuilder output = new StringBuilder();
+		try (InputStream is = proc.getInputStream()) {
+			byte[] buf = new byte[256];
+			for (int read; (read = is.read(buf)) >= 0;) {
+				//consume all the output, but only keep the beginning of it
+				if (output.length() < CLONE_OUTPUT_MAX_LENGTH) {
+					output.append(new String(buf, 0, read, StandardCharsets.UTF_8));
+				}
+			}
+		}
+		try {
+			if (proc.waitFor() == 0) {
+				return CLONE_RESULT_CLONED;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			proc.destroy();
+		}
+		Files.deleteIfExists(target);
+		if (isCloningUnsupportedOutput(output.toString())) {
+			return CLONE_RESULT_UNSUPPORTED;
+		}
+		return CLONE_RESULT_FAILED;
+	}
+
+	/**
+	 * Checks if the output of a failed copy command reports that cloning is not supported.
+	 * <p>
+	 * The <code>EOPNOTSUPP</code> and <code>ENOTSUP</code> errors are reported with this message by the C libraries.
+	 * Older versions of the commands may not recognize the cloning options at all.
+	 */
+	private static boolean isCloningUnsupportedOutput(String output) {
+		String lower = output.toLowerCase(Locale.ENGLISH);
+		return lower.contains("not supported")
+				|| lower.contains("unrecognized option") || lower.contains("illegal option")
+				|| lower.contains("invalid option");
+	}
+
+	private static BasicFileAttributes readAttributesNoFollow(Path path) throws IOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes the file at the given path if it is a symbolic link, or a hard link to another file.
+	 * <p>
+	 * Writing to such target would modify the file that it links to, which may be the source of the copy operation.
+	 */
+	private void deleteLinkAt(SakerPath targetpath, Path target) throws IOException {
+		if (isLink(target)) {
+			Files.delete(target);
+			//the build system may have the contents of the file cached
+			taskContext.invalidateGetContentDescriptor(LocalFileProvider.getInstance().getPathKey(targetpath));
+		}
+	}
+
+	private static boolean isLink(Path path) throws IOException {
+		Map<String, Object> attrs;
+		try {
+			attrs = Files.readAttributes(path, "unix:isSymbolicLink,isRegularFile,nlink", LinkOption.NOFOLLOW_LINKS);
+		} catch (NoSuchFileException e) {
+			return false;
+		} catch (UnsupportedOperationException | IllegalArgumentException e) {
+			return Files.isSymbolicLink(path);
+		}
+		if (Boolean.TRUE.equals(attrs.get("isSymbolicLink"))) {
+			return true;
+		}
+		Object nlink = attrs.get("nlink");
+		return Boolean.TRUE.equals(attrs.get("isRegularFile")) && nlink instanceof Integer && (Integer) nlink > 1;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.copy;
+
+import java.util.Locale;
+
+/**
+ * Specifies how the symbolic links in a local source directory are handled when it is copied to a local target.
+ * <p>
+ * The symbolic links that are specified directly as copy sources are always followed.
+ */
+public enum SymlinkHandling {
+	/**
+	 * The symbolic links are resolved, and the files and directories they point to are copied.
+	 */
+	FOLLOW,
+	/**
+	 * The symbolic links are recreated at the target with the same link targets.
+	 * <p>
+	 * The directories that the links point to are not traversed.
+	 */
+	PRESERVE,
+	/**
+	 * The symbolic links are not copied.
+	 */
+	SKIP;
+
+	/**
+	 * Gets the symbolic link handling for the given task option value.
+	 * <p>
+	 * The argument is compared to the enumeration names in a case insensitive manner.
+	 * 
+	 * @param option
+	 *            The option value.
+	 * @return The symbolic link handling or <code>null</code> if the argument doesn't denote one.
+	 */
+	public static SymlinkHandling fromOption(String option) {
+		if (option == null) {
+			return null;
+		}
+		try {
+			return valueOf(option.toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
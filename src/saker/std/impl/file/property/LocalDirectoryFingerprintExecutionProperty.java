@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.property;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.path.WildcardPath;
+import saker.build.file.path.WildcardPath.ItemLister;
+import saker.build.file.provider.FileEntry;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.file.provider.SakerPathFiles;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.runtime.execution.ExecutionProperty;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+import saker.std.impl.file.wildcard.WildcardSetMatcher;
+
+/**
+ * Execution property that computes the {@linkplain LocalFilesFingerprint fingerprint} of the contents of a local
+ * directory.
+ * <p>
+ * The fingerprint contains the files that match the given wildcards, or all files in the directory recursively if
+ * the wildcards are <code>null</code>. The paths in the fingerprint are relative to the directory.
+ * <p>
+ * If exclude wildcards are specified, the files that are matched by them are omitted from the fingerprint. The
+ * excluded directories are not listed.
+ * <p>
+ * If symbolic links are not followed, the links in the directory are part of the fingerprint with their own
+ * attributes, and the directories they point to are not listed.
+ * <p>
+ * The listing of the directory is cached between builds, and only the modified subdirectories are listed again. See
+ * {@link LocalDirectoryListingCache}.
+ */
+public class LocalDirectoryFingerprintExecutionProperty
+		implements ExecutionProperty<LocalFilesFingerprint>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private static final NavigableSet<WildcardPath> ALL_FILES_WILDCARD_SET = ImmutableUtils
+			.makeImmutableNavigableSet(new WildcardPath[] { WildcardPath.valueOf("**") });
+
+	private SakerPath path;
+	private NavigableSet<WildcardPath> wildcards;
+	private NavigableSet<WildcardPath> excludes;
+	private boolean followLinks = true;
+	private Object tag;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public LocalDirectoryFingerprintExecutionProperty() {
+	}
+
+	public LocalDirectoryFingerprintExecutionProperty(SakerPath path, NavigableSet<WildcardPath> wildcards,
+			Object tag) {
+		this(path, wildcards, null, tag);
+	}
+
+	public LocalDirectoryFingerprintExecutionProperty(SakerPath path, NavigableSet<WildcardPath> wildcards,
+			NavigableSet<WildcardPath> excludes, Object tag) {
+		this(path, wildcards, excludes, true, tag);
+	}
+
+	public LocalDirectoryFingerprintExecutionProperty(SakerPath path, NavigableSet<WildcardPath> wildcards,
+			NavigableSet<WildcardPath> excludes, boolean followlinks, Object tag) {
+		this.path = path;
+		this.wildcards = wildcards;
+		this.excludes = excludes == null || excludes.isEmpty() ? null : excludes;
+		this.followLinks = followlinks;
+		this.tag = tag;
+	}
+
+	@Override
+	public LocalFilesFingerprint getCurrentValue(ExecutionContext executioncontext) throws Exception {
+		NavigableSet<WildcardPath> includes = wildcards == null ? ALL_FILES_WILDCARD_SET : wildcards;
+		NavigableMap<SakerPath, ? extends FileEntry> entries = LocalDirectoryListingCache.getEntries(path, includes,
+				excludes, followLinks);
+		if (entries == null) {
+			//the wildcards cannot be compiled, list the directory without the cache
+			LocalFileProvider localfp = LocalFileProvider.getInstance();
+			NavigableMap<SakerPath, ? extends FileEntry> items = SakerPathFiles.relativizeSubPath(
+					WildcardPath.getItems(includes, ItemLister.forFileProvider(localfp, path)), path);
+			if (excludes != null) {
+				NavigableMap<SakerPath, FileEntry> filtered = new TreeMap<>();
+				for (Entry<SakerPath, ? extends FileEntry> entry : items.entrySet()) {
+					if (!WildcardSetMatcher.includesPathOrParent(excludes, entry.getKey())) {
+						filtered.put(entry.getKey(), entry.getValue());
+					}
+				}
+				items = filtered;
+			}
+			if (!followLinks) {
+				items = getNoFollowEntries(localfp, items);
+			}
+			entries = items;
+		}
+		return LocalFilesFingerprint.create(entries);
+	}
+
+	/**
+	 * Replaces the attributes of the symbolic links with the attributes of the links themselves, and removes the
+	 * entries which were listed through a link.
+	 */
+	private NavigableMap<SakerPath, FileEntry> getNoFollowEntries(LocalFileProvider localfp,
+			NavigableMap<SakerPath, ? extends FileEntry> items) throws IOException {
+		NavigableMap<SakerPath, FileEntry> result = new TreeMap<>();
+		SakerPath linkpath = null;
+		for (SakerPath relpath : items.keySet()) {
+			if (linkpath != null && relpath.startsWith(linkpath)) {
+				continue;
+			}
+			FileEntry attrs;
+			try {
+				attrs = localfp.getFileAttributes(path.resolve(relpath), LinkOption.NOFOLLOW_LINKS);
+			} catch (NoSuchFileException e) {
+				continue;
+			}
+			linkpath = attrs.isSymbolicLink() ? relpath : null;
+			result.put(relpath, attrs);
+		}
+		return result;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeObject(path);
+		SerialUtils.writeExternalCollection(out, wildcards);
+		SerialUtils.writeExternalCollection(out, excludes);
+		out.writeBoolean(followLinks);
+		out.writeObject(tag);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		path = (SakerPath) in.readObject();
+		wildcards = SerialUtils.readExternalSortedImmutableNavigableSet(in);
+		excludes = SerialUtils.readExternalSortedImmutableNavigableSet(in);
+		followLinks = in.readBoolean();
+		tag = in.readObject();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((excludes == null) ? 0 : excludes.hashCode());
+		result = prime * result + (followLinks ? 1231 : 1237);
+		result = prime * result + ((path == null) ? 0 : path.hashCode());
+		result = prime * result + ((tag == null) ? 0 : tag.hashCode());
+		result = prime * result + ((wildcards == null) ? 0 : wildcards.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LocalDirectoryFingerprintExecutionProperty other = (LocalDirectoryFingerprintExecutionProperty) obj;
+		if (excludes == null) {
+			if (other.excludes != null)
+				return false;
+		} else if (!excludes.equals(other.excludes))
+			return false;
+		if (followLinks != other.followLinks)
+			return false;
+		if (path == null) {
+			if (other.path != null)
+				return false;
+		} else if (!path.equals(other.path))
+			return false;
+		if (tag == null) {
+			if (other.tag != null)
+				return false;
+		} else if (!tag.equals(other.tag))
+			return false;
+		if (wildcards == null) {
+			if (other.wildcards != null)
+				return false;
+		} else if (!wildcards.equals(other.wildcards))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + (path != null ? "path=" + path + ", " : "")
+				+ (wildcards != null ? "wildcards=" + wildcards + ", " : "")
+				+ (excludes != null ? "excludes=" + excludes + ", " : "")
+				+ (followLinks ? "" : "followLinks=false, ") + (tag != null ? "tag=" + tag : "")
+				+ "]";
+	}
+
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.property;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.path.WildcardPath;
+import saker.build.file.provider.FileEntry;
+import saker.build.file.provider.LocalFileProvider;
+import saker.std.impl.file.wildcard.WildcardSetMatcher;
+
+/**
+ * Caches the wildcard matched listings of local directories between builds in the same JVM.
+ * <p>
+ * The cached listing contains the names of the matched files and the traversed subdirectories for each directory,
+ * along with the modification time of the directory. When the listing is requested again, the directories which have
+ * the same modification time are not listed again, only the attributes of their matched children are read. Directories
+ * with different modification times are listed and matched again.
+ * <p>
+ * Adding, removing or renaming a child changes the modification time of the directory, but modifying the contents of a
+ * file doesn't. Therefore the attributes of the matched files are always read.
+ * <p>
+ * The modification time of a directory is only trusted if it was sufficiently earlier than the time the directory was
+ * listed. Otherwise a modification in the same file system timestamp granularity could go unnoticed.
+ * <p>
+ * If symbolic links are not followed, the links are reported with their own attributes, and the directories they
+ * point to are not traversed.
+ * <p>
+ * The listings are softly referenced, so they are reclaimed under memory pressure. The keys of the reclaimed listings
+ * are removed from the cache when it is next accessed.
+ */
+final class LocalDirectoryListingCache {
+	private static final long MODIFICATION_TIME_MARGIN_MILLIS = 2000;
+
+	private static final ConcurrentMap<ListingKey, ListingReference> LISTINGS = new ConcurrentHashMap<>();
+	private static final ReferenceQueue<CachedListing> CLEARED_LISTINGS = new ReferenceQueue<>();
+
+	private LocalDirectoryListingCache() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Gets the entries in the given directory which are matched by the wildcards.
+	 * <p>
+	 * The result is the same as traversing the directory with a {@link WildcardSetMatcher} compiled from the
+	 * wildcards. Excluded directories are not traversed.
+	 * 
+	 * @param directory
+	 *            The local path of the directory.
+	 * @param wildcards
+	 *            The include wildcards.
+	 * @param excludes
+	 *            The exclude wildcards. May be <code>null</code>.
+	 * @param followlinks
+	 *            Whether the symbolic links should be resolved.
+	 * @return The matched entries mapped to their paths relative to the directory, or <code>null</code> if the
+	 *             wildcards cannot be compiled to a {@link WildcardSetMatcher}.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public static NavigableMap<SakerPath, FileEntry> getEntries(SakerPath directory,
+			NavigableSet<WildcardPath> wildcards, NavigableSet<WildcardPath> excludes, boolean followlinks)
+			throws IOException {
+		removeClearedListings();
+		ListingKey key = new ListingKey(directory, wildcards, excludes, followlinks);
+		ListingReference ref = LISTINGS.get(key);
+		CachedListing cached = ref == null ? null : ref.get();
+		WildcardSetMatcher matcher;
+		if (cached == null) {
+			matcher = WildcardSetMatcher.compile(wildcards, excludes);
+			if (matcher == null) {
+				return null;
+			}
+		} else {
+			matcher = cached.matcher;
+		}
+		Lister lister = new Lister(followlinks);
+		NavigableMap<SakerPath, FileEntry> result = new TreeMap<>();
+		//the root directory is always resolved
+		FileEntry rootattrs = new Lister(true).getAttributesOrNull(directory);
+		DirectoryListing root = null;
+		if (rootattrs != null && rootattrs.isDirectory()) {
+			root = list(lister, directory, SakerPath.EMPTY, matcher.getRootState(), rootattrs,
+					cached == null ? null : cached.root, result);
+		}
+		if (root == null) {
+			LISTINGS.remove(key);
+		} else {
+			LISTINGS.put(key, new ListingReference(key, new CachedListing(matcher, root), CLEARED_LISTINGS));
+		}
+		return result;
+	}
+
+	private static void removeClearedListings() {
+		for (Reference<? extends CachedListing> ref; (ref = CLEARED_LISTINGS.poll()) != null;) {
+			ListingReference listingref = (ListingReference) ref;
+			//only remove if it wasn't replaced meanwhile
+			LISTINGS.remove(listingref.key, listingref);
+		}
+	}
+
+	private static DirectoryListing list(Lister lister, SakerPath directory, SakerPath relativedir,
+			WildcardSetMatcher.State state, FileEntry directoryattrs, DirectoryListing cached,
+			NavigableMap<SakerPath, FileEntry> result) throws IOException {
+		if (cached != null && cached.isUpToDate(directoryattrs)) {
+			DirectoryListing revalidated = revalidate(lister, directory, relativedir, state, cached, result);
+			if (revalidated != null) {
+				return revalidated;
+			}
+		}
+		return scan(lister, directory, relativedir, state, directoryattrs, result);
+	}
+
+	/**
+	 * Reads the attributes of the cached children of a directory that has not been modified.
+	 * 
+	 * @return The revalidated listing, or <code>null</code> if the children are not the same as the cached ones, in
+	 *             which case nothing is added to the result.
+	 */
+	private static DirectoryListing revalidate(Lister lister, SakerPath directory, SakerPath relativedir,
+			WildcardSetMatcher.State state, DirectoryListing cached, NavigableMap<SakerPath, FileEntry> result)
+			throws IOException {
+		List<FileEntry> fileattrs = new ArrayList<>(cached.fileNames.size());
+		for (String name : cached.fileNames) {
+			FileEntry attrs = lister.getAttributesOrNull(directory.resolve(name));
+			if (attrs == null || attrs.isDirectory()) {
+				return null;
+			}
+			fileattrs.add(attrs);
+		}
+		List<FileEntry> dirattrs = new ArrayList<>(cached.directories.size());
+		for (String name : cached.directories.keySet()) {
+			FileEntry attrs = lister.getAttributesOrNull(directory.resolve(name));
+			if (attrs == null || !attrs.isDirectory()) {
+				return null;
+			}
+			dirattrs.add(attrs);
+		}
+		for (int i = 0; i < fileattrs.size(); i++) {
+			result.put(relativedir.resolve(cached.fileNames.get(i)), fileattrs.get(i));
+		}
+		NavigableMap<String, DirectoryListing> subdirs = new TreeMap<>();
+		int i = 0;
+		for (Entry<String, DirectoryListing> entry : cached.directories.entrySet()) {
+			String name = entry.getKey();
+			FileEntry attrs = dirattrs.get(i++);
+			//the state is not null, as the directory wasn't cached otherwise
+			WildcardSetMatcher.State nstate = state.next(name);
+			SakerPath childrelpath = relativedir.resolve(name);
+			if (nstate.isIncluded()) {
+				result.put(childrelpath, attrs);
+			}
+			DirectoryListing child = null;
+			if (nstate.isFinishable()) {
+				child = list(lister, directory.resolve(name), childrelpath, nstate, attrs, entry.getValue(), result);
+			}
+			subdirs.put(name, child);
+		}
+		return new DirectoryListing(cached.lastModifiedMillis, cached.listedMillis, cached.fileNames, subdirs);
+	}
+
+	private static DirectoryListing scan(Lister lister, SakerPath directory, SakerPath relativedir,
+			WildcardSetMatcher.State state, FileEntry directoryattrs, NavigableMap<SakerPath, FileEntry> result)
+			throws IOException {
+		//the listing time is determined before the directory is listed
+		//so the modifications that happen during the listing are detected the next time
+		long listedmillis = System.currentTimeMillis();
+		NavigableMap<String, ? extends FileEntry> children;
+		try {
+			children = lister.getDirectoryEntries(directory);
+		} catch (NoSuchFileException | NotDirectoryException e) {
+			return null;
+		}
+		List<String> filenames = new ArrayList<>();
+		NavigableMap<String, DirectoryListing> subdirs = new TreeMap<>();
+		for (Entry<String, ? extends FileEntry> entry : children.entrySet()) {
+			String name = entry.getKey();
+			FileEntry attrs = entry.getValue();
+			if (!attrs.isDirectory()) {
+				if (state.includes(name)) {
+					result.put(relativedir.resolve(name), attrs);
+					filenames.add(name);
+				}
+				continue;
+			}
+			WildcardSetMatcher.State nstate = state.next(name);
+			if (nstate == null || nstate.isExcluded()) {
+				//don't descend into excluded directories
+				continue;
+			}
+			SakerPath childrelpath = relativedir.resolve(name);
+			if (nstate.isIncluded()) {
+				result.put(childrelpath, attrs);
+			}
+			DirectoryListing child = null;
+			if (nstate.isFinishable()) {
+				child = scan(lister, directory.resolve(name), childrelpath, nstate, attrs, result);
+			}
+			subdirs.put(name, child);
+		}
+		return new DirectoryListing(directoryattrs.getLastModifiedMillis(), listedmillis, filenames, subdirs);
+	}
+
+	/**
+	 * Reads the directory entries and file attributes, optionally without following symbolic links.
+	 */
+	private static final class Lister {
+		private final LocalFileProvider localfp = LocalFileProvider.getInstance();
+		private final boolean followLinks;
+
+		public Lister(boolean followLinks) {
+			this.followLinks = followLinks;
+		}
+
+		public NavigableMap<String, ? extends FileEntry> getDirectoryEntries(SakerPath directory) throws IOException {
+			if (followLinks) {
+				return localfp.getDirectoryEntries(directory);
+			}
+			NavigableMap<String, FileEntry> result = new TreeMap<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(LocalFileProvider.toRealPath(directory))) {
+				for (Path child : stream) {
+					BasicFileAttributes attrs;
+					try {
+						attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch (NoSuchFileException e) {
+						//deleted concurrently
+						continue;
+					}
+					result.put(child.getFileName().toString(), new FileEntry(attrs));
+				}
+			}
+			return result;
+		}
+
+		public FileEntry getAttributesOrNull(SakerPath path) throws IOException {
+			try {
+				if (followLinks) {
+					return localfp.getFileAttributes(path);
+				}
+				return localfp.getFileAttributes(path, LinkOption.NOFOLLOW_LINKS);
+			} catch (NoSuchFileException e) {
+				return null;
+			}
+		}
+	}
+
+	private static final class ListingReference extends SoftReference<CachedListing> {
+		final ListingKey key;
+
+		public ListingReference(ListingKey key, CachedListing referent, ReferenceQueue<? super CachedListing> queue) {
+			super(referent, queue);
+			this.key = key;
+		}
+	}
+
+	private static final class CachedListing {
+		final WildcardSetMatcher matcher;
+		final DirectoryListing root;
+
+		public CachedListing(WildcardSetMatcher matcher, DirectoryListing root) {
+			this.matcher = matcher;
+			this.root = root;
+		}
+	}
+
+	/**
+	 * The matched children of a directory.
+	 * <p>
+	 * The subdirectories map to <code>null</code> if they are not traversed, or if they couldn't be listed.
+	 */
+	private static final class DirectoryListing {
+		final long lastModifiedMillis;
+		final long listedMillis;
+		final List<String> fileNames;
+		final NavigableMap<String, DirectoryListing> directories;
+
+		public DirectoryListing(long lastModifiedMillis, long listedMillis, List<String> fileNames,
+				NavigableMap<String, DirectoryListing> directories) {
+			this.lastModifiedMillis = lastModifiedMillis;
+			this.listedMillis = listedMillis;
+			this.fileNames = fileNames;
+			this.directories = directories;
+		}
+
+		public boolean isUpToDate(FileEntry directoryattrs) {
+			return directoryattrs.getLastModifiedMillis() == lastModifiedMillis
+					&& lastModifiedMillis + MODIFICATION_TIME_MARGIN_MILLIS < listedMillis;
+		}
+	}
+
+	private static final class ListingKey {
+		private final SakerPath directory;
+		private final NavigableSet<WildcardPath> wildcards;
+		private final NavigableSet<WildcardPath> excludes;
+		private final boolean followLinks;
+
+		public ListingKey(SakerPath directory, NavigableSet<WildcardPath> wildcards,
+				NavigableSet<WildcardPath> excludes, boolean followLinks) {
+			this.directory = directory;
+			this.wildcards = wildcards;
+			this.excludes = excludes;
+			this.followLinks = followLinks;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((directory == null) ? 0 : directory.hashCode());
+			result = prime * result + ((excludes == null) ? 0 : excludes.hashCode());
+			result = prime * result + (followLinks ? 1231 : 1237);
+			result = prime * result + ((wildcards == null) ? 0 : wildcards.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			ListingKey other = (ListingKey) obj;
+			if (directory == null) {
+				if (other.directory != null)
+					return false;
+			} else if (!directory.equals(other.directory))
+				return false;
+			if (excludes == null) {
+				if (other.excludes != null)
+					return false;
+			} else if (!excludes.equals(other.excludes))
+				return false;
+			if (followLinks != other.followLinks)
+				return false;
+			if (wildcards == null) {
+				if (other.wildcards != null)
+					return false;
+			} else if (!wildcards.equals(other.wildcards))
+				return false;
+			return true;
+		}
+	}
+}
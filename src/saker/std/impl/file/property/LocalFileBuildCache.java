@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.property;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.FileEntry;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.file.provider.SakerPathFiles;
+import saker.build.runtime.execution.ExecutionContext;
+
+/**
+ * Caches the attributes of local files for the duration of a build.
+ * <p>
+ * The local file execution properties are often tagged with a unique object for each task, so the build system doesn't
+ * share their values between tasks. Without this cache, a file that is referenced by many tasks would be checked once
+ * for each task. The tagged properties still report separate dependencies, only the file system is queried once for
+ * each file in a build.
+ * <p>
+ * The content descriptors of the files are not cached here, they are retrieved from the content database of the build
+ * system, which already shares them between the tasks.
+ * <p>
+ * The cache is associated with the {@link ExecutionContext} of the build, and is discarded together with it. Files
+ * under the build directory are not cached, as they are commonly modified by the tasks during the build. The tasks of
+ * this bundle that write local files {@linkplain #invalidate(ExecutionContext, SakerPath) invalidate} the written
+ * paths before they report dependencies on them.
+ */
+public final class LocalFileBuildCache {
+	private static final Map<ExecutionContext, LocalFileBuildCache> CACHES = new WeakHashMap<>();
+
+	/**
+	 * The local path of the build directory, or <code>null</code> if there's none.
+	 */
+	private final SakerPath buildDirectoryLocalPath;
+	private final ConcurrentNavigableMap<SakerPath, CachedAttributes> attributes = new ConcurrentSkipListMap<>();
+
+	private LocalFileBuildCache(SakerPath buildDirectoryLocalPath) {
+		this.buildDirectoryLocalPath = buildDirectoryLocalPath;
+	}
+
+	/**
+	 * Gets the attributes of a local file.
+	 * 
+	 * @param executioncontext
+	 *            The execution context of the build.
+	 * @param path
+	 *            The local path of the file.
+	 * @return The attributes of the file.
+	 * @throws NoSuchFileException
+	 *             If the file doesn't exist.
+	 * @throws IOException
+	 *             In case of I/O error.
+	 */
+	public static FileEntry getFileAttributes(ExecutionContext executioncontext, SakerPath path) throws IOException {
+		LocalFileBuildCache cache = get(executioncontext);
+		if (cache == null || cache.isUncached(path)) {
+			return LocalFileProvider.getInstance().getFileAttributes(path);
+		}
+		CachedAttributes cached = cache.attributes.get(path);
+		if (cached == null) {
+			FileEntry attrs;
+			try {
+				attrs = LocalFileProvider.getInstance().getFileAttributes(path);
+			} catch (NoSuchFileException e) {
+				attrs = null;
+			}
+			cached = new CachedAttributes(attrs);
+			CachedAttributes prev = cache.attributes.putIfAbsent(path, cached);
+			if (prev != null) {
+				cached = prev;
+			}
+		}
+		if (cached.attributes == null) {
+			throw new NoSuchFileException(path.toString());
+		}
+		return cached.attributes;
+	}
+
+	/**
+	 * Removes the cached information about the given path and the files under it.
+	 * <p>
+	 * Should be called after a local file has been modified during the build.
+	 * 
+	 * @param executioncontext
+	 *            The execution context of the build.
+	 * @param path
+	 *            The local path of the modified file or directory.
+	 */
+	public static void invalidate(ExecutionContext executioncontext, SakerPath path) {
+		LocalFileBuildCache cache;
+		synchronized (CACHES) {
+			cache = CACHES.get(executioncontext);
+		}
+		if (cache == null) {
+			return;
+		}
+		SakerPathFiles.getPathSubMapDirectoryChildren(cache.attributes, path, true).clear();
+	}
+
+	private static LocalFileBuildCache get(ExecutionContext executioncontext) {
+		if (executioncontext == null) {
+			return null;
+		}
+		synchronized (CACHES) {
+			LocalFileBuildCache cache = CACHES.get(executioncontext);
+			if (cache == null) {
+				cache = new LocalFileBuildCache(getBuildDirectoryLocalPath(executioncontext));
+				CACHES.put(executioncontext, cache);
+			}
+			return cache;
+		}
+	}
+
+	private static SakerPath getBuildDirectoryLocalPath(ExecutionContext executioncontext) {
+		SakerPath builddirpath = executioncontext.getBuildDirectoryPath();
+		if (builddirpath == null) {
+			return null;
+		}
+		Path localpath = executioncontext.getPathConfiguration().toLocalPath(builddirpath);
+		if (localpath == null) {
+			return null;
+		}
+		return SakerPath.valueOf(localpath);
+	}
+
+	private boolean isUncached(SakerPath path) {
+		return buildDirectoryLocalPath != null && path.startsWith(buildDirectoryLocalPath);
+	}
+
+	private static final class CachedAttributes {
+		/**
+		 * The attributes, or <code>null</code> if the file doesn't exist.
+		 */
+		final FileEntry attributes;
+
+		public CachedAttributes(FileEntry attributes) {
+			this.attributes = attributes;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.property;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import saker.build.file.path.SakerPath;
+
+/**
+ * Caches the SHA-256 digests of local files between builds in the same JVM.
+ * <p>
+ * A cached digest is associated with the size, modification time and file key of the file when it was computed. The
+ * digest is reused as long as the current attributes of the file are the same. This is the same assumption that the
+ * attribute based content descriptors of the build system make.
+ * <p>
+ * The digests computed while copying files are recorded, so the copied files don't need to be read again to get their
+ * digests.
+ * <p>
+ * The digests are softly referenced, so they are reclaimed under memory pressure. The paths of the reclaimed digests
+ * are removed from the cache when it is next accessed.
+ */
+public final class LocalFileDigestCache {
+	private static final ConcurrentMap<SakerPath, DigestReference> DIGESTS = new ConcurrentHashMap<>();
+	private static final ReferenceQueue<CachedDigest> CLEARED_DIGESTS = new ReferenceQueue<>();
+
+	private LocalFileDigestCache() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Creates a new message digest that computes the digests used by this cache.
+	 * 
+	 * @return The message digest.
+	 */
+	public static MessageDigest createMessageDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError("SHA-256 is not available.", e);
+		}
+	}
+
+	/**
+	 * Gets the cached digest of the given file without reading it.
+	 * 
+	 * @param path
+	 *            The local path of the file.
+	 * @param attrs
+	 *            The current attributes of the file.
+	 * @return The digest or <code>null</code> if it is not cached for the given attributes.
+	 */
+	public static byte[] getCachedDigest(SakerPath path, BasicFileAttributes attrs) {
+		removeClearedDigests();
+		DigestReference ref = DIGESTS.get(path);
+		CachedDigest cached = ref == null ? null : ref.get();
+		if (cached == null || !cached.isSameAttributes(attrs)) {
+			return null;
+		}
+		return cached.digest;
+	}
+
+	/**
+	 * Records the digest of a file.
+	 * 
+	 * @param path
+	 *            The local path of the file.
+	 * @param attrs
+	 *            The attributes of the file which has the given digest.
+	 * @param digest
+	 *            The digest of the file contents.
+	 */
+	public static void putDigest(SakerPath path, BasicFileAttributes attrs, byte[] digest) {
+		removeClearedDigests();
+		DIGESTS.put(path, new DigestReference(path, new CachedDigest(attrs, digest), CLEARED_DIGESTS));
+	}
+
+	private static void removeClearedDigests() {
+		for (Reference<? extends CachedDigest> ref; (ref = CLEARED_DIGESTS.poll()) != null;) {
+			DigestReference digestref = (DigestReference) ref;
+			//only remove if it wasn't replaced meanwhile
+			DIGESTS.remove(digestref.path, digestref);
+		}
+	}
+
+	/**
+	 * Checks if the given attributes of a file are considered to be the same by this cache.
+	 * <p>
+	 * Can be used to check if a file was modified while its digest was computed.
+	 * 
+	 * @param first
+	 *            The first attributes.
+	 * @param second
+	 *            The second attributes.
+	 * @return <code>true</code> if the size, modification time and file key are the same.
+	 */
+	public static boolean isSameAttributes(BasicFileAttributes first, BasicFileAttributes second) {
+		return first.size() == second.size() && first.lastModifiedTime().equals(second.lastModifiedTime())
+				&& Objects.equals(first.fileKey(), second.fileKey());
+	}
+
+	private static final class DigestReference extends SoftReference<CachedDigest> {
+		final SakerPath path;
+
+		public DigestReference(SakerPath path, CachedDigest referent, ReferenceQueue<? super CachedDigest> queue) {
+			super(referent, queue);
+			this.path = path;
+		}
+	}
+
+	private static final class CachedDigest {
+		private final long size;
+		private final FileTime lastModifiedTime;
+		private final Object fileKey;
+		private final byte[] digest;
+
+		public CachedDigest(BasicFileAttributes attrs, byte[] digest) {
+			this.size = attrs.size();
+			this.lastModifiedTime = attrs.lastModifiedTime();
+			this.fileKey = attrs.fileKey();
+			this.digest = digest;
+		}
+
+		public boolean isSameAttributes(BasicFileAttributes attrs) {
+			return size == attrs.size() && lastModifiedTime.equals(attrs.lastModifiedTime())
+					&& Objects.equals(fileKey, attrs.fileKey());
+		}
+	}
+}
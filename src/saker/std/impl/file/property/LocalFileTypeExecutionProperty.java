@@ -21,7 +21,6 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
 import saker.build.file.path.SakerPath;
-import saker.build.file.provider.LocalFileProvider;
 import saker.build.runtime.execution.ExecutionContext;
 import saker.build.runtime.execution.ExecutionProperty;
 
@@ -43,7 +42,7 @@ public class LocalFileTypeExecutionProperty implements ExecutionProperty<Integer
 	@Override
 	public Integer getCurrentValue(ExecutionContext executioncontext) {
 		try {
-			return LocalFileProvider.getInstance().getFileAttributes(path).getType();
+			return LocalFileBuildCache.getFileAttributes(executioncontext, path).getType();
 		} catch (Exception e) {
 			return null;
 		}
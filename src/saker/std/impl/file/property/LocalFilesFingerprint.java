@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.property;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.FileEntry;
+import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.StringUtils;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+
+/**
+ * Aggregated fingerprint of the attributes of multiple local files.
+ * <p>
+ * The fingerprint is a hash tree of the file paths, types, sizes and last modification times. Each directory in the
+ * tree is hashed based on the hashes of its children, and the root digest is used to compare the fingerprints.
+ * <p>
+ * The attributes of the files are also stored for diagnostic purposes, but they are not considered in
+ * {@link #equals(Object)}.
+ */
+public final class LocalFilesFingerprint implements Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private byte[] digest;
+	private NavigableMap<SakerPath, FileEntry> entries;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public LocalFilesFingerprint() {
+	}
+
+	private LocalFilesFingerprint(byte[] digest, NavigableMap<SakerPath, FileEntry> entries) {
+		this.digest = digest;
+		this.entries = entries;
+	}
+
+	/**
+	 * Creates a new fingerprint for the given file attributes.
+	 * 
+	 * @param entries
+	 *            The attributes of the files mapped to their relative paths.
+	 * @return The fingerprint.
+	 */
+	public static LocalFilesFingerprint create(NavigableMap<SakerPath, ? extends FileEntry> entries) {
+		//stack of the digests of the directories that are being hashed
+		List<SakerPath> dirpathstack = new ArrayList<>();
+		List<MessageDigest> digeststack = new ArrayList<>();
+		MessageDigest rootdigest = createMessageDigest();
+		for (Entry<SakerPath, ? extends FileEntry> entry : entries.entrySet()) {
+			SakerPath path = entry.getKey();
+			int parentnamecount = path.getNameCount() - 1;
+			int stacksize = dirpathstack.size();
+			while (stacksize > 0
+					&& (stacksize > parentnamecount || !path.startsWith(dirpathstack.get(stacksize - 1)))) {
+				--stacksize;
+				finishDirectory(dirpathstack.remove(stacksize), digeststack.remove(stacksize),
+						stacksize == 0 ? rootdigest : digeststack.get(stacksize - 1));
+			}
+			//the parent directories may not be part of the entries
+			for (; stacksize < parentnamecount; ++stacksize) {
+				dirpathstack.add(path.subPath(0, stacksize + 1));
+				digeststack.add(createMessageDigest());
+			}
+			FileEntry attrs = entry.getValue();
+			MessageDigest parentdigest = stacksize == 0 ? rootdigest : digeststack.get(stacksize - 1);
+			updateName(parentdigest, path.getFileName());
+			if (attrs.isDirectory()) {
+				//the attributes of directories change when their children change, don't include them
+				parentdigest.update((byte) 'd');
+				dirpathstack.add(path);
+				digeststack.add(createMessageDigest());
+			} else {
+				parentdigest.update(attrs.isSymbolicLink() ? (byte) 'l' : (byte) 'f');
+				updateLong(parentdigest, attrs.getSize());
+				updateLong(parentdigest, attrs.getLastModifiedMillis());
+			}
+		}
+		for (int i = dirpathstack.size() - 1; i >= 0; --i) {
+			finishDirectory(dirpathstack.get(i), digeststack.get(i), i == 0 ? rootdigest : digeststack.get(i - 1));
+		}
+		return new LocalFilesFingerprint(rootdigest.digest(), ImmutableUtils.makeImmutableNavigableMap(entries));
+	}
+
+	/**
+	 * Gets the attributes of the files that were used to create the fingerprint.
+	 * 
+	 * @return The file attributes mapped to their relative paths.
+	 */
+	public NavigableMap<SakerPath, FileEntry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Gets the root digest of the hash tree.
+	 * 
+	 * @return The digest bytes.
+	 */
+	public byte[] getDigest() {
+		return digest.clone();
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		SerialUtils.writeExternalByteArray(out, digest);
+		SerialUtils.writeExternalMap(out, entries);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		digest = SerialUtils.readExternalByteArray(in);
+		entries = SerialUtils.readExternalSortedImmutableNavigableMap(in);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(digest);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LocalFilesFingerprint other = (LocalFilesFingerprint) obj;
+		if (!Arrays.equals(digest, other.digest))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + StringUtils.toHexString(digest) + ", files="
+				+ (entries == null ? 0 : entries.size()) + "]";
+	}
+
+	private static void finishDirectory(SakerPath dirpath, MessageDigest dirdigest, MessageDigest parentdigest) {
+		parentdigest.update((byte) 'D');
+		updateName(parentdigest, dirpath.getFileName());
+		parentdigest.update(dirdigest.digest());
+	}
+
+	private static void updateName(MessageDigest digest, String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		updateLong(digest, bytes.length);
+		digest.update(bytes);
+	}
+
+	private static void updateLong(MessageDigest digest, long v) {
+		for (int i = 0; i < 8; i++) {
+			digest.update((byte) (v >>> (i * 8)));
+		}
+	}
+
+	private static MessageDigest createMessageDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError("SHA-256 is not available.", e);
+		}
+	}
+}
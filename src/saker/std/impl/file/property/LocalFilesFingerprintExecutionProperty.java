@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.property;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.file.NoSuchFileException;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.FileEntry;
+import saker.build.runtime.execution.ExecutionContext;
+import saker.build.runtime.execution.ExecutionProperty;
+import saker.build.thirdparty.saker.util.io.SerialUtils;
+
+/**
+ * Execution property that computes the {@linkplain LocalFilesFingerprint fingerprint} of a fixed set of local files.
+ * <p>
+ * The files are specified as local paths mapped to the relative paths that they are present in the fingerprint with.
+ * Files that don't exist are omitted from the fingerprint.
+ */
+public class LocalFilesFingerprintExecutionProperty
+		implements ExecutionProperty<LocalFilesFingerprint>, Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private NavigableMap<SakerPath, SakerPath> files;
+	private Object tag;
+
+	/**
+	 * For {@link Externalizable}.
+	 */
+	public LocalFilesFingerprintExecutionProperty() {
+	}
+
+	public LocalFilesFingerprintExecutionProperty(NavigableMap<SakerPath, SakerPath> files, Object tag) {
+		this.files = files;
+		this.tag = tag;
+	}
+
+	@Override
+	public LocalFilesFingerprint getCurrentValue(ExecutionContext executioncontext) throws Exception {
+		NavigableMap<SakerPath, FileEntry> entries = new TreeMap<>();
+		for (Entry<SakerPath, SakerPath> entry : files.entrySet()) {
+			try {
+				entries.put(entry.getKey(), LocalFileBuildCache.getFileAttributes(executioncontext, entry.getValue()));
+			} catch (NoSuchFileException e) {
+				continue;
+			}
+		}
+		return LocalFilesFingerprint.create(entries);
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		SerialUtils.writeExternalMap(out, files);
+		out.writeObject(tag);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		files = SerialUtils.readExternalSortedImmutableNavigableMap(in);
+		tag = in.readObject();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((files == null) ? 0 : files.hashCode());
+		result = prime * result + ((tag == null) ? 0 : tag.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		LocalFilesFingerprintExecutionProperty other = (LocalFilesFingerprintExecutionProperty) obj;
+		if (files == null) {
+			if (other.files != null)
+				return false;
+		} else if (!files.equals(other.files))
+			return false;
+		if (tag == null) {
+			if (other.tag != null)
+				return false;
+		} else if (!tag.equals(other.tag))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + (files != null ? "files=" + files.size() + ", " : "")
+				+ (tag != null ? "tag=" + tag : "") + "]";
+	}
+
+}
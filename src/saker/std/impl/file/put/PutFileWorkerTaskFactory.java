@@ -39,6 +39,7 @@ import saker.std.api.file.location.ExecutionFileLocation;
 import saker.std.api.file.location.FileLocation;
 import saker.std.api.file.location.FileLocationVisitor;
 import saker.std.api.file.location.LocalFileLocation;
+import saker.std.impl.file.property.LocalFileBuildCache;
 import saker.std.impl.file.property.LocalFileContentDescriptorExecutionProperty;
 import saker.std.main.file.put.PutFileTaskFactory;
 
@@ -102,6 +103,7 @@ public class PutFileWorkerTaskFactory implements TaskFactory<FileLocation>, Task
 					fp.ensureWriteRequest(path, FileEntry.TYPE_FILE,
 							SakerFileProvider.OPERATION_FLAG_DELETE_INTERMEDIATE_FILES);
 					fp.writeToFile(new UnsyncByteArrayInputStream(bytecontents), path);
+					LocalFileBuildCache.invalidate(taskcontext.getExecutionContext(), path);
 					ContentDescriptor contentdescriptor = taskcontext
 							.invalidateGetContentDescriptor(fp.getPathKey(path));
 
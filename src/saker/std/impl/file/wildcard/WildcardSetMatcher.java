@@ -0,0 +1,488 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.file.wildcard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.path.WildcardPath;
+
+/**
+ * Matches path names against a set of relative wildcards during directory traversal.
+ * <p>
+ * The matcher may also contain exclude wildcards. A path is excluded if the path itself or any of its parent paths
+ * are matched by an exclude wildcard. The traversal shouldn't descend into excluded directories.
+ * <p>
+ * The wildcards are compiled into a single nondeterministic automaton where each state corresponds to a path name
+ * pattern of a wildcard. During traversal, the {@linkplain State state} of a directory is the set of automaton states
+ * that are active after consuming the names of the directory path. The states are interned, so the traversal of
+ * directories that have the same state share the same object.
+ * <p>
+ * Only wildcards that consist of literal names, names with <code>*</code> and <code>**</code> names can be compiled.
+ * {@link #compile(Collection)} returns <code>null</code> for other wildcards, in which case the callers should fall
+ * back to using {@link WildcardPath} directly.
+ */
+public final class WildcardSetMatcher {
+	private static final byte KIND_LITERAL = 0;
+	private static final byte KIND_GLOB = 1;
+	private static final byte KIND_RECURSIVE = 2;
+	private static final byte KIND_END = 3;
+
+	private final byte[] kinds;
+	private final String[] patterns;
+	/**
+	 * Whether the given state belongs to an exclude wildcard.
+	 */
+	private final boolean[] excludeStates;
+	/**
+	 * The states reachable from a given state without consuming a name, including itself.
+	 */
+	private final int[][] closures;
+	/**
+	 * Whether consuming a matching name from the given state results in an accepting state.
+	 */
+	private final boolean[] acceptsAfter;
+
+	private final ConcurrentMap<StateKey, State> states = new ConcurrentHashMap<>();
+	private final State rootState;
+
+	private WildcardSetMatcher(byte[] kinds, String[] patterns, boolean[] excludeStates) {
+		this.kinds = kinds;
+		this.patterns = patterns;
+		this.excludeStates = excludeStates;
+		int count = kinds.length;
+		this.closures = new int[count][];
+		for (int i = count - 1; i >= 0; --i) {
+			if (kinds[i] == KIND_RECURSIVE) {
+				int[] next = closures[i + 1];
+				int[] c = new int[next.length + 1];
+				c[0] = i;
+				System.arraycopy(next, 0, c, 1, next.length);
+				closures[i] = c;
+			} else {
+				closures[i] = new int[] { i };
+			}
+		}
+		this.acceptsAfter = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			switch (kinds[i]) {
+				case KIND_LITERAL:
+				case KIND_GLOB: {
+					acceptsAfter[i] = containsEnd(closures[i + 1]);
+					break;
+				}
+				case KIND_RECURSIVE: {
+					acceptsAfter[i] = containsEnd(closures[i]);
+					break;
+				}
+				default: {
+					break;
+				}
+			}
+		}
+		long[] rootbits = new long[(count + 63) / 64];
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || kinds[i - 1] == KIND_END) {
+				//first state of a wildcard
+				addClosure(rootbits, i);
+			}
+		}
+		this.rootState = intern(rootbits);
+	}
+
+	/**
+	 * Compiles the given relative wildcards.
+	 * 
+	 * @param wildcards
+	 *            The wildcards.
+	 * @return The compiled matcher or <code>null</code> if any of the wildcards cannot be compiled.
+	 */
+	public static WildcardSetMatcher compile(Collection<? extends WildcardPath> wildcards) {
+		return compile(wildcards, null);
+	}
+
+	/**
+	 * Compiles the given relative include and exclude wildcards.
+	 * 
+	 * @param wildcards
+	 *            The include wildcards.
+	 * @param excludes
+	 *            The exclude wildcards. May be <code>null</code>.
+	 * @return The compiled matcher or <code>null</code> if any of the wildcards cannot be compiled.
+	 */
+	public static WildcardSetMatcher compile(Collection<? extends WildcardPath> wildcards,
+			Collection<? extends WildcardPath> excludes) {
+		List<String> patterns = new ArrayList<>();
+		List<Byte> kinds = new ArrayList<>();
+		if (!addWildcards(wildcards, patterns, kinds)) {
+			return null;
+		}
+		int includecount = kinds.size();
+		if (excludes != null && !addWildcards(excludes, patterns, kinds)) {
+			return null;
+		}
+		byte[] kindarray = new byte[kinds.size()];
+		boolean[] excludestates = new boolean[kindarray.length];
+		for (int i = 0; i < kindarray.length; i++) {
+			kindarray[i] = kinds.get(i);
+			excludestates[i] = i >= includecount;
+		}
+		return new WildcardSetMatcher(kindarray, patterns.toArray(new String[patterns.size()]), excludestates);
+	}
+
+	/**
+	 * Checks if any of the given wildcards include the path or any of its parent paths.
+	 * <p>
+	 * This method can be used to check exclusions if the wildcards couldn't be compiled.
+	 * 
+	 * @param wildcards
+	 *            The wildcards.
+	 * @param relativepath
+	 *            The relative path to check.
+	 * @return <code>true</code> if the path or any of its parents are included by the wildcards.
+	 */
+	public static boolean includesPathOrParent(Collection<? extends WildcardPath> wildcards, SakerPath relativepath) {
+		int namecount = relativepath.getNameCount();
+		for (int i = 1; i <= namecount; i++) {
+			SakerPath path = i == namecount ? relativepath : relativepath.subPath(0, i);
+			for (WildcardPath wc : wildcards) {
+				if (wc.includes(path)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean addWildcards(Collection<? extends WildcardPath> wildcards, List<String> patterns,
+			List<Byte> kinds) {
+		for (WildcardPath wc : wildcards) {
+			String str = wc.toString();
+			if (str.isEmpty() || str.startsWith("/") || str.indexOf(':') >= 0) {
+				//absolute wildcard
+				return false;
+			}
+			for (String name : str.split("/")) {
+				if (name.isEmpty() || ".".equals(name) || "..".equals(name) || name.indexOf('?') >= 0) {
+					return false;
+				}
+				if ("**".equals(name)) {
+					if (!kinds.isEmpty() && kinds.get(kinds.size() - 1) == KIND_RECURSIVE) {
+						//consecutive recursive names are the same as a single one
+						continue;
+					}
+					kinds.add(KIND_RECURSIVE);
+				} else if (name.contains("**")) {
+					return false;
+				} else if (name.indexOf('*') >= 0) {
+					kinds.add(KIND_GLOB);
+				} else {
+					kinds.add(KIND_LITERAL);
+				}
+				patterns.add(name);
+			}
+			kinds.add(KIND_END);
+			patterns.add(null);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the given path or any of its parent paths are excluded.
+	 * 
+	 * @param relativepath
+	 *            The relative path to check.
+	 * @return <code>true</code> if excluded.
+	 */
+	public boolean isExcluded(SakerPath relativepath) {
+		State state = rootState;
+		int namecount = relativepath.getNameCount();
+		for (int i = 0; i < namecount; i++) {
+			state = state.next(relativepath.getName(i));
+			if (state == null) {
+				return false;
+			}
+			if (state.isExcluded()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the state that corresponds to the base directory of the relative wildcards.
+	 * 
+	 * @return The root state.
+	 */
+	public State getRootState() {
+		return rootState;
+	}
+
+	private State intern(long[] bits) {
+		StateKey key = new StateKey(bits);
+		State result = states.get(key);
+		if (result != null) {
+			return result;
+		}
+		State nstate = new State(bits);
+		result = states.putIfAbsent(key, nstate);
+		return result == null ? nstate : result;
+	}
+
+	private boolean matchesName(int state, String name) {
+		switch (kinds[state]) {
+			case KIND_LITERAL: {
+				return patterns[state].equals(name);
+			}
+			case KIND_GLOB: {
+				return globMatches(patterns[state], name);
+			}
+			case KIND_RECURSIVE: {
+				return true;
+			}
+			default: {
+				return false;
+			}
+		}
+	}
+
+	private void addClosure(long[] bits, int state) {
+		for (int s : closures[state]) {
+			bits[s >>> 6] |= 1L << s;
+		}
+	}
+
+	private boolean containsEnd(int[] closure) {
+		for (int s : closure) {
+			if (kinds[s] == KIND_END) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Matches a single path name against a pattern that contains <code>*</code> characters.
+	 */
+	private static boolean globMatches(String pattern, String name) {
+		int plen = pattern.length();
+		int nlen = name.length();
+		int p = 0;
+		int n = 0;
+		int starp = -1;
+		int starn = 0;
+		while (n < nlen) {
+			if (p < plen) {
+				char pc = pattern.charAt(p);
+				if (pc == '*') {
+					starp = p++;
+					starn = n;
+					continue;
+				}
+				if (pc == name.charAt(n)) {
+					++p;
+					++n;
+					continue;
+				}
+			}
+			if (starp < 0) {
+				return false;
+			}
+			//backtrack, let the last star consume one more character
+			p = starp + 1;
+			n = ++starn;
+		}
+		while (p < plen && pattern.charAt(p) == '*') {
+			++p;
+		}
+		return p == plen;
+	}
+
+	/**
+	 * The set of active automaton states after consuming the names of a directory path.
+	 */
+	public final class State {
+		private final long[] bits;
+		private final int[] members;
+		private final boolean accepting;
+		private final boolean excluded;
+		private final boolean finishable;
+
+		State(long[] bits) {
+			this.bits = bits;
+			int count = 0;
+			for (long b : bits) {
+				count += Long.bitCount(b);
+			}
+			this.members = new int[count];
+			boolean accepting = false;
+			boolean excluded = false;
+			boolean finishable = false;
+			int idx = 0;
+			for (int i = 0; i < bits.length; i++) {
+				long b = bits[i];
+				while (b != 0) {
+					int s = i * 64 + Long.numberOfTrailingZeros(b);
+					b &= b - 1;
+					members[idx++] = s;
+					if (kinds[s] == KIND_END) {
+						if (excludeStates[s]) {
+							excluded = true;
+						} else {
+							accepting = true;
+						}
+					} else if (!excludeStates[s]) {
+						finishable = true;
+					}
+				}
+			}
+			this.excluded = excluded;
+			this.accepting = accepting && !excluded;
+			this.finishable = finishable && !excluded;
+		}
+
+		/**
+		 * Checks if the path that this state corresponds to is included by any of the wildcards, and not excluded.
+		 * 
+		 * @return <code>true</code> if included.
+		 */
+		public boolean isIncluded() {
+			return accepting;
+		}
+
+		/**
+		 * Checks if the path that this state corresponds to is matched by any of the exclude wildcards.
+		 * <p>
+		 * If a directory is excluded, all of its children are excluded as well.
+		 * 
+		 * @return <code>true</code> if excluded.
+		 */
+		public boolean isExcluded() {
+			return excluded;
+		}
+
+		/**
+		 * Checks if any path under the path of this state may be included by the wildcards.
+		 * 
+		 * @return <code>true</code> if the traversal should continue.
+		 */
+		public boolean isFinishable() {
+			return finishable;
+		}
+
+		/**
+		 * Checks if the child with the given name is included by any of the wildcards.
+		 * <p>
+		 * Same as <code>next(name).isIncluded()</code>, but without computing the next state.
+		 * 
+		 * @param name
+		 *            The name of the child.
+		 * @return <code>true</code> if included.
+		 */
+		public boolean includes(String name) {
+			boolean included = false;
+			for (int s : members) {
+				if (acceptsAfter[s] && matchesName(s, name)) {
+					if (excludeStates[s]) {
+						return false;
+					}
+					included = true;
+				}
+			}
+			return included;
+		}
+
+		/**
+		 * Gets the state of the child with the given name.
+		 * 
+		 * @param name
+		 *            The name of the child.
+		 * @return The next state, or <code>null</code> if no paths can be included under the child.
+		 */
+		public State next(String name) {
+			long[] nbits = null;
+			for (int s : members) {
+				if (!matchesName(s, name)) {
+					continue;
+				}
+				if (nbits == null) {
+					nbits = new long[bits.length];
+				}
+				if (kinds[s] == KIND_RECURSIVE) {
+					addClosure(nbits, s);
+				} else {
+					addClosure(nbits, s + 1);
+				}
+			}
+			if (nbits == null) {
+				return null;
+			}
+			return intern(nbits);
+		}
+
+		/**
+		 * Gets the identifiers of the active automaton states.
+		 * <p>
+		 * The state can be restored using {@link WildcardSetMatcher#getState(long[])}.
+		 * 
+		 * @return The state bits.
+		 */
+		public long[] getStateBits() {
+			return bits.clone();
+		}
+	}
+
+	/**
+	 * Gets the state for the given state bits.
+	 * 
+	 * @param bits
+	 *            The state bits that were retrieved using {@link State#getStateBits()} from a matcher that was compiled
+	 *            with the same wildcards.
+	 * @return The state.
+	 */
+	public State getState(long[] bits) {
+		return intern(bits.clone());
+	}
+
+	private static final class StateKey {
+		private final long[] bits;
+		private final int hashCode;
+
+		StateKey(long[] bits) {
+			this.bits = bits;
+			this.hashCode = Arrays.hashCode(bits);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof StateKey))
+				return false;
+			return Arrays.equals(bits, ((StateKey) obj).bits);
+		}
+	}
+}
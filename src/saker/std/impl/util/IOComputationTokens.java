@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package saker.std.impl.util;
+
+import java.io.IOException;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.FileEntry;
+import saker.build.file.provider.LocalFileProvider;
+
+/**
+ * Utility class for estimating the computation token count of tasks that mainly perform file I/O.
+ * <p>
+ * Heavy I/O tasks request more computation tokens, so the build system doesn't run them concurrently with too many
+ * other computationally heavy tasks. Tasks that only transfer a few small files don't need to request any tokens.
+ */
+public final class IOComputationTokens {
+	/**
+	 * The number of transferred bytes that are worth a computation token.
+	 */
+	private static final long BYTES_PER_TOKEN = 256L * 1024 * 1024;
+	/**
+	 * The number of transferred files that are worth a computation token.
+	 */
+	private static final long FILES_PER_TOKEN = 4096;
+	/**
+	 * The maximum number of tokens requested by a single I/O task.
+	 */
+	private static final int MAX_TOKEN_COUNT = 4;
+
+	private IOComputationTokens() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Gets the computation token count for transferring the given amount of files.
+	 * 
+	 * @param filecount
+	 *            The number of files.
+	 * @param bytecount
+	 *            The total size of the files in bytes.
+	 * @param mintokencount
+	 *            The minimum number of tokens to request.
+	 * @return The computation token count.
+	 */
+	public static int getComputationTokenCount(long filecount, long bytecount, int mintokencount) {
+		long tokens = filecount / FILES_PER_TOKEN + bytecount / BYTES_PER_TOKEN;
+		if (tokens < mintokencount) {
+			return mintokencount;
+		}
+		return (int) Math.min(tokens, Math.max(MAX_TOKEN_COUNT, mintokencount));
+	}
+
+	/**
+	 * Gets the attributes of a local file for estimation purposes.
+	 * 
+	 * @param path
+	 *            The local path.
+	 * @return The attributes or <code>null</code> if they cannot be retrieved.
+	 */
+	public static FileEntry getLocalFileAttributesOrNull(SakerPath path) {
+		try {
+			return LocalFileProvider.getInstance().getFileAttributes(path);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
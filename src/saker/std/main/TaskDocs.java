@@ -42,8 +42,18 @@ public class TaskDocs {
 			info = @NestInformation("Collection of file locations that were copied during a directory copying.\n"
 					+ "If the copy operation copied the subfiles of the source directory, then this field contains "
 					+ "the file locations that were copied. The file locations point to the target location where "
-					+ "the copied files ended up.\n"
-					+ "If the copy operation didn't copy subfiles or subdirectories, then this field is empty."))
+					+ "the copied files ended up. The file locations are ordered by their paths.\n"
+					+ "If the copy operation didn't copy subfiles or subdirectories, or the files were written to an "
+					+ "archive, then this field is empty."))
+	@NestFieldInformation(value = "WrittenFileCount",
+			type = @NestTypeUsage(int.class),
+			info = @NestInformation("The number of files that were written to the local file system.\n"
+					+ "Files that are copied to a local Target are not written if they already have the same "
+					+ "contents as their source. These are not counted."))
+	@NestFieldInformation(value = "SkippedFileCount",
+			type = @NestTypeUsage(int.class),
+			info = @NestInformation("The number of local target files that weren't written because their contents "
+					+ "were already the same as the source file."))
 	public static class CopyFileTaskOutput {
 	}
 
@@ -111,6 +121,75 @@ public class TaskDocs {
 	public static class DocCharsetTaskOption {
 	}
 
+	@NestTypeInformation(qualifiedName = "SymlinkHandlingTaskOption",
+			enumValues = {
+
+					@NestFieldInformation(value = "Follow",
+							info = @NestInformation("The symbolic links are resolved, and the files and directories "
+									+ "they point to are copied.")),
+					@NestFieldInformation(value = "Preserve",
+							info = @NestInformation("The symbolic links are recreated at the target with the same "
+									+ "link targets. The directories they point to are not traversed.")),
+					@NestFieldInformation(value = "Skip",
+							info = @NestInformation("The symbolic links are not copied.")),
+
+			})
+	@NestInformation("Specifies how the symbolic links in a copied directory are handled.")
+	public static class DocSymlinkHandlingTaskOption {
+	}
+
+	@NestTypeInformation(qualifiedName = "ArchiveFormatTaskOption",
+			enumValues = {
+
+					@NestFieldInformation(value = "Zip",
+							info = @NestInformation("The files are written to a ZIP archive.")),
+					@NestFieldInformation(value = "Jar",
+							info = @NestInformation("The files are written to a JAR archive. If the archive contains a "
+									+ "META-INF/MANIFEST.MF file, it is written before the other entries.")),
+
+			})
+	@NestInformation("Specifies the format of the archive that the copied files are written to.")
+	public static class DocArchiveFormatTaskOption {
+	}
+
+	@NestTypeInformation(qualifiedName = "CopyModeTaskOption",
+			enumValues = {
+
+					@NestFieldInformation(value = "Copy",
+							info = @NestInformation("The contents of the files are copied to the target.")),
+					@NestFieldInformation(value = "HardLink",
+							info = @NestInformation("The target files are created as hard links to the source files.")),
+					@NestFieldInformation(value = "Reflink",
+							info = @NestInformation("The target files are created as copy-on-write clones of the source files "
+									+ "if the file system supports it. Small files are copied.")),
+					@NestFieldInformation(value = "Symlink",
+							info = @NestInformation("The target files are created as symbolic links that point to the source files.")),
+					@NestFieldInformation(value = "Deduplicate",
+							info = @NestInformation("The files are stored by their contents in the build directory, and the "
+									+ "target files are created as hard links to the stored files. Files with the same "
+									+ "contents are written only once, even if they are copied to multiple targets.\n"
+									+ "The size of the store is bounded, the least recently used files are removed from it.")),
+
+			})
+	@NestInformation("Specifies how the contents of a file is transferred to the copy target.")
+	public static class DocCopyModeTaskOption {
+	}
+
+	@NestTypeInformation(qualifiedName = "MaterializationTaskOption",
+			enumValues = {
+
+					@NestFieldInformation(value = "Copy",
+							info = @NestInformation("The contents of the input files are copied to the output directory.")),
+					@NestFieldInformation(value = "HardLink",
+							info = @NestInformation("The output files are created as hard links to the input files.")),
+					@NestFieldInformation(value = "Symlink",
+							info = @NestInformation("The output files are created as symbolic links that point to the input files.")),
+
+			})
+	@NestInformation("Specifies how the input files are placed in the prepared directory.")
+	public static class DocMaterializationTaskOption {
+	}
+
 	@NestTypeInformation(qualifiedName = "Pattern")
 	@NestInformation("Represents a regular expression pattern.")
 	public static class DocPattern {
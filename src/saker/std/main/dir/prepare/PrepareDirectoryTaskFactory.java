@@ -23,6 +23,7 @@ import saker.build.file.path.SakerPath;
 import saker.build.runtime.execution.ExecutionContext;
 import saker.build.task.ParameterizableTask;
 import saker.build.task.TaskContext;
+import saker.build.task.exception.TaskParameterException;
 import saker.build.task.utils.SimpleStructuredObjectTaskResult;
 import saker.build.task.utils.annot.SakerInput;
 import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
@@ -36,6 +37,8 @@ import saker.nest.utils.FrontendTaskFactory;
 import saker.std.api.file.location.FileLocation;
 import saker.std.impl.dir.prepare.PrepareDirectoryWorkerTaskFactory;
 import saker.std.impl.dir.prepare.PrepareDirectoryWorkerTaskIdentifier;
+import saker.std.impl.file.copy.CopyMode;
+import saker.std.main.TaskDocs.DocMaterializationTaskOption;
 import saker.std.main.TaskDocs.DocPrepareDirectoryWorkerTaskOutput;
 import saker.std.main.file.utils.TaskOptionUtils;
 
@@ -65,6 +68,14 @@ import saker.std.main.file.utils.TaskOptionUtils;
 				+ "In general keeping this parameter as false can help testing the application that you're developing as any additionally "
 				+ "created files by the app will be persisted between builds. If you're creating release builds, then set this parameter "
 				+ "to true to ensure that other leftover or stale files don't interfere with the build results."))
+@NestParameterInformation(value = "Materialization",
+		type = @NestTypeUsage(DocMaterializationTaskOption.class),
+		info = @NestInformation("Specifies how the input files should be placed in the output directory.\n"
+				+ "Linking is performed if the build directory is on the local file system, and the input file is present "
+				+ "on the local file system as well. Otherwise, or if the file system doesn't support the specified mode, "
+				+ "the contents of the files are copied.\n"
+				+ "Linked output files share their contents with the input files, so they shouldn't be modified.\n"
+				+ "The default value is Copy."))
 public class PrepareDirectoryTaskFactory extends FrontendTaskFactory<Object> {
 	private static final long serialVersionUID = 1L;
 
@@ -82,12 +93,26 @@ public class PrepareDirectoryTaskFactory extends FrontendTaskFactory<Object> {
 			@SakerInput(value = { "ClearDirectory" })
 			public boolean clearDirectoryOption = false;
 
+			@SakerInput(value = { "Materialization" })
+			public String materializationOption;
+
 			@Override
 			public Object run(TaskContext taskcontext) throws Exception {
 				if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
 					BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_FRONTEND);
 				}
 
+				CopyMode materialization = CopyMode.COPY;
+				if (materializationOption != null) {
+					materialization = CopyMode.fromOption(materializationOption);
+					if (materialization != CopyMode.COPY && materialization != CopyMode.HARDLINK
+							&& materialization != CopyMode.SYMLINK) {
+						taskcontext.abortExecution(new TaskParameterException(
+								"Unrecognized Materialization: " + materializationOption, taskcontext.getTaskId()));
+						return null;
+					}
+				}
+
 				List<RelativeContentsTaskOption> contents = ObjectUtils.cloneArrayList(contentsOption,
 						RelativeContentsTaskOption::clone);
 
@@ -105,6 +130,7 @@ public class PrepareDirectoryTaskFactory extends FrontendTaskFactory<Object> {
 						outputpath);
 				PrepareDirectoryWorkerTaskFactory workertask = new PrepareDirectoryWorkerTaskFactory(inputs,
 						clearDirectoryOption);
+				workertask.setMaterialization(materialization);
 				taskcontext.startTask(workertaskid, workertask, null);
 
 				SimpleStructuredObjectTaskResult result = new SimpleStructuredObjectTaskResult(workertaskid);
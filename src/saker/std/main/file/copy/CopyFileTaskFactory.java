@@ -30,6 +30,7 @@ import saker.build.task.utils.SimpleStructuredObjectTaskResult;
 import saker.build.task.utils.annot.SakerInput;
 import saker.build.task.utils.dependencies.EqualityTaskOutputChangeDetector;
 import saker.build.thirdparty.saker.util.ImmutableUtils;
+import saker.build.thirdparty.saker.util.ObjectUtils;
 import saker.build.trace.BuildTrace;
 import saker.nest.scriptinfo.reflection.annot.NestInformation;
 import saker.nest.scriptinfo.reflection.annot.NestParameterInformation;
@@ -40,9 +41,16 @@ import saker.std.api.file.location.ExecutionFileLocation;
 import saker.std.api.file.location.FileLocation;
 import saker.std.api.file.location.FileLocationVisitor;
 import saker.std.api.file.location.LocalFileLocation;
+import saker.std.impl.file.copy.ArchiveFormat;
 import saker.std.impl.file.copy.CopyFileWorkerTaskFactory;
+import saker.std.impl.file.copy.CopyMode;
+import saker.std.impl.file.copy.SymlinkHandling;
 import saker.std.main.TaskDocs;
+import saker.std.main.TaskDocs.DocArchiveFormatTaskOption;
+import saker.std.main.TaskDocs.DocCopyModeTaskOption;
+import saker.std.main.TaskDocs.DocSymlinkHandlingTaskOption;
 import saker.std.main.file.option.FileLocationTaskOption;
+import saker.std.main.file.option.MultiFileLocationTaskOption;
 import saker.std.main.file.utils.TaskOptionUtils;
 
 @NestTaskInformation(returnType = @NestTypeUsage(TaskDocs.CopyFileTaskOutput.class))
@@ -55,16 +63,27 @@ import saker.std.main.file.utils.TaskOptionUtils;
 		+ "If the Source is a directory, then the Wildcards parameter specifies which files in it should be copied. The "
 		+ "task doesn't automatically copy the subtree of a directory if you don't specify the Wildcards parameter. "
 		+ "You can use the ** wildcard to copy the complete subtree.\n"
+		+ "Multiple files can be copied into a target directory by specifying them using the Sources parameter.\n"
 		+ "The task may throw an exception if the copy operation would result in a non-empty directory being overwritten.")
 @NestParameterInformation(value = "Source",
 		aliases = { "" },
-		required = true,
 		type = @NestTypeUsage(FileLocationTaskOption.class),
-		info = @NestInformation("The Source file location that should be copied to the Target."))
+		info = @NestInformation("The Source file location that should be copied to the Target.\n"
+				+ "Either this or the Sources parameter must be specified."))
+@NestParameterInformation(value = "Sources",
+		type = @NestTypeUsage(value = Collection.class, elementTypes = MultiFileLocationTaskOption.class),
+		info = @NestInformation("Specifies multiple files that should be copied into the Target directory.\n"
+				+ "Each file is copied to the child of the Target directory with the same file name. The files may "
+				+ "be specified using paths, wildcards, file locations or file collections.\n"
+				+ "All files are copied by the same worker task, which is more efficient than copying them one by one "
+				+ "using multiple " + CopyFileTaskFactory.TASK_NAME + " calls. The Wildcards and Exclude parameters "
+				+ "apply to the sources that are directories.\n"
+				+ "The file names of the sources must be unique. The parameter cannot be used together with Source."))
 @NestParameterInformation(value = "Target",
 		required = true,
 		type = @NestTypeUsage(FileLocationTaskOption.class),
-		info = @NestInformation("The Target file location where the Source should be copied to."))
+		info = @NestInformation("The Target file location where the Source should be copied to.\n"
+				+ "If the Sources parameter is used, this is the directory that the files are copied into."))
 @NestParameterInformation(value = "Wildcards",
 		aliases = { "Wildcard" },
 		type = @NestTypeUsage(value = Collection.class, elementTypes = WildcardPath.class),
@@ -73,6 +92,68 @@ import saker.std.main.file.utils.TaskOptionUtils;
 				+ "Source directory determine if it should be copied to the Target or not.\n"
 				+ "If any of the specified wildcard path matches a subtree file, then it will be copied under the Target file "
 				+ "with the same relative path."))
+@NestParameterInformation(value = "Exclude",
+		aliases = { "Excludes" },
+		type = @NestTypeUsage(value = Collection.class, elementTypes = WildcardPath.class),
+		info = @NestInformation("Specifies the part of the directory subtree that shouldn't be copied to the Target if the Source is a directory.\n"
+				+ "The parameter expects one or more wildcards that are matched against the relative paths of the subfiles "
+				+ "under the Source directory. If a file or any of its parent directories are matched by an exclude "
+				+ "wildcard, then it won't be copied, even if it is matched by the Wildcards parameter.\n"
+				+ "The excluded directories are not traversed, therefore excluding large subtrees (e.g. **/node_modules) "
+				+ "also avoids listing their contents."))
+@NestParameterInformation(value = "Parallelism",
+		type = @NestTypeUsage(int.class),
+		info = @NestInformation("Specifies the maximum number of threads that should be used to copy the files of a Source directory.\n"
+				+ "The parameter is used when a local directory is copied to a local Target. The directories are created "
+				+ "before the files are copied, and the files are copied concurrently using at most the specified number of threads.\n"
+				+ "The default value is the number of available processors. Set to 1 to copy the files sequentially."))
+@NestParameterInformation(value = "ShardSize",
+		type = @NestTypeUsage(long.class),
+		info = @NestInformation("Specifies the maximum total size in bytes of the files that are copied by a single inner task.\n"
+				+ "The parameter is used when a local directory is copied to a local Target. If specified, the files "
+				+ "are partitioned into shards, and each shard is copied by an inner task. The shards are scheduled "
+				+ "by the build system based on the available computation resources.\n"
+				+ "If not specified, the files are copied by the worker task itself."))
+@NestParameterInformation(value = "LargeFileThreshold",
+		type = @NestTypeUsage(long.class),
+		info = @NestInformation("Specifies the minimum size in bytes of the files that are copied in chunks concurrently.\n"
+				+ "The parameter is used when a local file is copied to a local Target. The target of a large file is "
+				+ "preallocated, and its contents are copied in fixed size chunks using multiple threads.\n"
+				+ "The default value is 1 GiB."))
+@NestParameterInformation(value = "Mode",
+		type = @NestTypeUsage(DocCopyModeTaskOption.class),
+		info = @NestInformation("Specifies how the files should be transferred when the Target is a local file location.\n"
+				+ "The parameter is used when a file is copied to the local file system. If the Source is an execution "
+				+ "file location, linking is only performed if the file is present on the local file system.\n"
+				+ "If the file system doesn't support the specified mode, the contents of the files are copied.\n"
+				+ "The default value is Copy."))
+@NestParameterInformation(value = "Format",
+		type = @NestTypeUsage(DocArchiveFormatTaskOption.class),
+		info = @NestInformation("Specifies the format of the archive that the sources should be written to.\n"
+				+ "If specified, the Target is an archive file, and the Source files are written as its entries. "
+				+ "If the Source is a directory, its children are written to the root of the archive. If the Sources "
+				+ "parameter is used, each source is written with its file name.\n"
+				+ "The entries are written in path order with fixed modification times, so the archive is the same "
+				+ "for the same input files. The contents of the files are streamed directly into the archive.\n"
+				+ "The parameter cannot be used together with Mode."))
+@NestParameterInformation(value = "Verify",
+		type = @NestTypeUsage(boolean.class),
+		info = @NestInformation("Specifies whether the copied files should be verified.\n"
+				+ "The parameter is used when a local file is copied to a local Target. The SHA-256 digest of the "
+				+ "file is computed while its contents are copied. The copying fails if the Source was modified "
+				+ "during the copying, or if the copied contents don't match the digest of the Source that is known "
+				+ "from a previous copying. The Source is only read once.\n"
+				+ "Targets that already have the same contents as the Source are not written.\n"
+				+ "Files that are linked due to the Mode parameter are not verified.\n"
+				+ "The default value is false."))
+@NestParameterInformation(value = "Symlinks",
+		type = @NestTypeUsage(DocSymlinkHandlingTaskOption.class),
+		info = @NestInformation("Specifies how the symbolic links in a Source directory should be handled.\n"
+				+ "The parameter is used when a local directory is copied to a local Target. If the links are not "
+				+ "followed, the files and directories they point to are not traversed, and only the links "
+				+ "themselves are tracked for changes.\n"
+				+ "Symbolic links that are specified directly as sources are always followed.\n"
+				+ "The default value is Follow."))
 public class CopyFileTaskFactory extends FrontendTaskFactory<Object> {
 	private static final long serialVersionUID = 1L;
 
@@ -84,23 +165,47 @@ public class CopyFileTaskFactory extends FrontendTaskFactory<Object> {
 	}
 
 	private static final class CopyFileTaskImpl implements ParameterizableTask<Object> {
-		@SakerInput(value = { "", "Source" }, required = true)
+		@SakerInput(value = { "", "Source" })
 		public FileLocationTaskOption sourceOption;
+		@SakerInput(value = { "Sources" })
+		public Collection<MultiFileLocationTaskOption> sourcesOption;
 		@SakerInput(value = { "Target" }, required = true)
 		public FileLocationTaskOption targetOption;
 		@SakerInput(value = { "Wildcard", "Wildcards" })
 		public Collection<WildcardPath> wildcardOption = Collections.emptyNavigableSet();
+		@SakerInput(value = { "Exclude", "Excludes" })
+		public Collection<WildcardPath> excludeOption;
+		@SakerInput(value = { "Parallelism" })
+		public Integer parallelismOption;
+		@SakerInput(value = { "ShardSize" })
+		public Long shardSizeOption;
+		@SakerInput(value = { "LargeFileThreshold" })
+		public Long largeFileThresholdOption;
+		@SakerInput(value = { "Mode" })
+		public String modeOption;
+		@SakerInput(value = { "Format" })
+		public String formatOption;
+		@SakerInput(value = { "Verify" })
+		public boolean verifyOption;
+		@SakerInput(value = { "Symlinks" })
+		public String symlinksOption;
 
 		@Override
 		public Object run(TaskContext taskcontext) throws Exception {
 			if (saker.build.meta.Versions.VERSION_FULL_COMPOUND >= 8_006) {
 				BuildTrace.classifyTask(BuildTrace.CLASSIFICATION_FRONTEND);
 			}
-			if (sourceOption == null) {
+			if (sourceOption == null && sourcesOption == null) {
 				taskcontext.abortExecution(new MissingRequiredParameterException(
 						"Source parameter is missing for " + TASK_NAME, taskcontext.getTaskId()));
 				return null;
 			}
+			if (sourceOption != null && sourcesOption != null) {
+				taskcontext.abortExecution(new TaskParameterException(
+						"Source and Sources parameters cannot be used together for " + TASK_NAME,
+						taskcontext.getTaskId()));
+				return null;
+			}
 			if (this.targetOption == null) {
 				taskcontext.abortExecution(new MissingRequiredParameterException(
 						"Copy target location parameter is missing for " + TASK_NAME, taskcontext.getTaskId()));
@@ -111,6 +216,64 @@ public class CopyFileTaskFactory extends FrontendTaskFactory<Object> {
 						"Null Wildcard parameter for " + TASK_NAME, taskcontext.getTaskId()));
 				return null;
 			}
+			if (this.excludeOption != null) {
+				for (WildcardPath exclude : this.excludeOption) {
+					if (exclude == null) {
+						taskcontext.abortExecution(new TaskParameterException(
+								"Null Exclude parameter element for " + TASK_NAME, taskcontext.getTaskId()));
+						return null;
+					}
+				}
+			}
+			if (this.parallelismOption != null && this.parallelismOption < 1) {
+				taskcontext.abortExecution(new TaskParameterException(
+						"Parallelism must be positive: " + this.parallelismOption, taskcontext.getTaskId()));
+				return null;
+			}
+			if (this.shardSizeOption != null && this.shardSizeOption < 1) {
+				taskcontext.abortExecution(new TaskParameterException(
+						"ShardSize must be positive: " + this.shardSizeOption, taskcontext.getTaskId()));
+				return null;
+			}
+			if (this.largeFileThresholdOption != null && this.largeFileThresholdOption < 1) {
+				taskcontext.abortExecution(new TaskParameterException(
+						"LargeFileThreshold must be positive: " + this.largeFileThresholdOption,
+						taskcontext.getTaskId()));
+				return null;
+			}
+			CopyMode mode = CopyMode.COPY;
+			if (this.modeOption != null) {
+				mode = CopyMode.fromOption(this.modeOption);
+				if (mode == null) {
+					taskcontext.abortExecution(new TaskParameterException("Unrecognized copy Mode: " + this.modeOption,
+							taskcontext.getTaskId()));
+					return null;
+				}
+			}
+			SymlinkHandling symlinks = SymlinkHandling.FOLLOW;
+			if (this.symlinksOption != null) {
+				symlinks = SymlinkHandling.fromOption(this.symlinksOption);
+				if (symlinks == null) {
+					taskcontext.abortExecution(new TaskParameterException(
+							"Unrecognized Symlinks handling: " + this.symlinksOption, taskcontext.getTaskId()));
+					return null;
+				}
+			}
+			ArchiveFormat format = null;
+			if (this.formatOption != null) {
+				format = ArchiveFormat.fromOption(this.formatOption);
+				if (format == null) {
+					taskcontext.abortExecution(new TaskParameterException(
+							"Unrecognized archive Format: " + this.formatOption, taskcontext.getTaskId()));
+					return null;
+				}
+				if (this.modeOption != null) {
+					taskcontext.abortExecution(new TaskParameterException(
+							"Format and Mode parameters cannot be used together for " + TASK_NAME,
+							taskcontext.getTaskId()));
+					return null;
+				}
+			}
 			try {
 				validateCopyLocation(this.targetOption, taskcontext);
 				validateCopyLocation(this.sourceOption, taskcontext);
@@ -120,11 +283,33 @@ public class CopyFileTaskFactory extends FrontendTaskFactory<Object> {
 			}
 			NavigableSet<WildcardPath> wildcards = ImmutableUtils.makeImmutableNavigableSet(wildcardOption);
 
-			FileLocation sourcelocation = TaskOptionUtils.toFileLocation(sourceOption, taskcontext);
 			FileLocation targetlocation = TaskOptionUtils.toFileLocation(targetOption, taskcontext);
 
-			CopyFileWorkerTaskFactory workertask = new CopyFileWorkerTaskFactory(sourcelocation, targetlocation,
-					wildcards);
+			CopyFileWorkerTaskFactory workertask;
+			if (sourcesOption != null) {
+				Collection<FileLocation> sourcelocations = TaskOptionUtils.toFileLocations(sourcesOption, taskcontext,
+						null);
+				workertask = new CopyFileWorkerTaskFactory(sourcelocations, targetlocation, wildcards);
+			} else {
+				FileLocation sourcelocation = TaskOptionUtils.toFileLocation(sourceOption, taskcontext);
+				workertask = new CopyFileWorkerTaskFactory(sourcelocation, targetlocation, wildcards);
+			}
+			if (this.parallelismOption != null) {
+				workertask.setParallelism(this.parallelismOption);
+			}
+			workertask.setMode(mode);
+			workertask.setArchiveFormat(format);
+			workertask.setVerify(this.verifyOption);
+			workertask.setSymlinks(symlinks);
+			if (this.shardSizeOption != null) {
+				workertask.setShardSize(this.shardSizeOption);
+			}
+			if (this.largeFileThresholdOption != null) {
+				workertask.setLargeFileThreshold(this.largeFileThresholdOption);
+			}
+			if (!ObjectUtils.isNullOrEmpty(this.excludeOption)) {
+				workertask.setExcludes(ImmutableUtils.makeImmutableNavigableSet(this.excludeOption));
+			}
 			taskcontext.startTask(workertask, workertask, null);
 			SimpleStructuredObjectTaskResult result = new SimpleStructuredObjectTaskResult(workertask);
 			taskcontext.reportSelfTaskOutputChangeDetector(new EqualityTaskOutputChangeDetector(result));
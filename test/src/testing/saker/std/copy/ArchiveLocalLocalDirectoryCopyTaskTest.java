@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class ArchiveLocalLocalDirectoryCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource = buildDir.resolve("dir");
+	private Path copySourcef1 = copySource.resolve("file1.txt");
+	private Path copySourcef2 = copySource.resolve("d2/file2.txt");
+	private Path archiveTarget = buildDir.resolve("out/archive.zip");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", archiveTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(copySourcef2.getParent());
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1".getBytes()), copySourcef1);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f2".getBytes()), copySourcef2);
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		byte[] archive = localfp.getAllBytes(archiveTarget).copy();
+		assertEquals(readEntries(archive), Arrays.asList("d2/", "d2/file2.txt:f2", "file1.txt:f1"));
+		assertEmpty(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")));
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1mod".getBytes()), copySourcef1);
+		res = runScriptTask("build");
+		assertEquals(readEntries(localfp.getAllBytes(archiveTarget).copy()),
+				Arrays.asList("d2/", "d2/file2.txt:f2", "file1.txt:f1mod"));
+
+		//the archive is the same for the same inputs
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1".getBytes()), copySourcef1);
+		res = runScriptTask("build");
+		assertTrue(Arrays.equals(localfp.getAllBytes(archiveTarget).copy(), archive));
+
+		//the modified archive is rewritten
+		localfp.writeToFile(new UnsyncByteArrayInputStream("xyz".getBytes()), archiveTarget);
+		res = runScriptTask("build");
+		assertTrue(Arrays.equals(localfp.getAllBytes(archiveTarget).copy(), archive));
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+	}
+
+	private static List<String> readEntries(byte[] archive) throws IOException {
+		List<String> result = new ArrayList<>();
+		try (ZipInputStream zis = new ZipInputStream(new UnsyncByteArrayInputStream(archive))) {
+			for (ZipEntry entry; (entry = zis.getNextEntry()) != null;) {
+				if (entry.isDirectory()) {
+					result.add(entry.getName());
+					continue;
+				}
+				StringBuilder sb = new StringBuilder(entry.getName()).append(':');
+				for (int c; (c = zis.read()) >= 0;) {
+					sb.append((char) c);
+				}
+				result.add(sb.toString());
+			}
+		}
+		return result;
+	}
+}
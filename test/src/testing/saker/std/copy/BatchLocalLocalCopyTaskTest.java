@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class BatchLocalLocalCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource1 = buildDir.resolve("src1/file1.txt");
+	private Path copySource2 = buildDir.resolve("src2/file2.txt");
+	private Path copyDirTarget = buildDir.resolve("copydir");
+	private Path copyTarget1 = copyDirTarget.resolve("file1.txt");
+	private Path copyTarget2 = copyDirTarget.resolve("file2.txt");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source1", copySource1.toString());
+		result.put("testing.location.source2", copySource2.toString());
+		result.put("testing.location.target", copyDirTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(copySource1.getParent());
+		localfp.createDirectories(copySource2.getParent());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1".getBytes()), copySource1);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f2".getBytes()), copySource2);
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTarget1).toString(), "f1");
+		assertEquals(localfp.getAllBytes(copyTarget2).toString(), "f2");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTarget1, copyTarget2));
+		assertEquals(CopyTaskTestUtils.getLocalTargetPath(res.getTargetTaskResult("copy")), copyDirTarget);
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f2mod".getBytes()), copySource2);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTarget1).toString(), "f1");
+		assertEquals(localfp.getAllBytes(copyTarget2).toString(), "f2mod");
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("xyz".getBytes()), copyTarget1);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTarget1).toString(), "f1");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTarget1, copyTarget2));
+	}
+}
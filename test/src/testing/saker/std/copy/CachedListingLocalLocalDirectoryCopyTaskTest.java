@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+/**
+ * Tests that the cached listing of the copied directory is revalidated properly.
+ * <p>
+ * The modification times of the source directories are set to the past, so the cached listing is used for them.
+ */
+@SakerTest
+public class CachedListingLocalLocalDirectoryCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource = buildDir.resolve("dir");
+	private Path copyDirA = copySource.resolve("a");
+	private Path copyDirB = copySource.resolve("b");
+	private Path copySourcef1 = copyDirA.resolve("f1.txt");
+	private Path copySourcef2 = copyDirB.resolve("f2.txt");
+	private Path copySourcef3 = copyDirB.resolve("f3.txt");
+	private Path copyDirTarget = buildDir.resolve("copydir");
+	private Path copyTargetf1 = copyDirTarget.resolve("a/f1.txt");
+	private Path copyTargetf2 = copyDirTarget.resolve("b/f2.txt");
+	private Path copyTargetf3 = copyDirTarget.resolve("b/f3.txt");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", copyDirTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(copyDirA);
+		localfp.createDirectories(copyDirB);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1".getBytes()), copySourcef1);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f2".getBytes()), copySourcef2);
+		setPastModificationTimes(0);
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf1).toString(), "f1");
+		assertEquals(localfp.getAllBytes(copyTargetf2).toString(), "f2");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTargetf1, copyTargetf2));
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//the modification time of the parent directory doesn't change, the file attributes are still checked
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1mod".getBytes()), copySourcef1);
+		setPastModificationTimes(0);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf1).toString(), "f1mod");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTargetf1, copyTargetf2));
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f3".getBytes()), copySourcef3);
+		setPastModificationTimes(1);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf3).toString(), "f3");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTargetf1, copyTargetf2, copyTargetf3));
+
+		localfp.delete(copySourcef1);
+		setPastModificationTimes(2);
+		res = runScriptTask("build");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTargetf2, copyTargetf3));
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+	}
+
+	private void setPastModificationTimes(int version) throws Exception {
+		FileTime time = FileTime.fromMillis(System.currentTimeMillis() - 60_000 + version * 1000);
+		Files.setLastModifiedTime(copySource, time);
+		Files.setLastModifiedTime(copyDirA, time);
+		Files.setLastModifiedTime(copyDirB, time);
+	}
+}
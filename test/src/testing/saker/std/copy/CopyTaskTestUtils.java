@@ -59,6 +59,14 @@ public class CopyTaskTestUtils {
 		return LocalFileProvider.toRealPath((SakerPath) getLocalGetLocalPathMethod(target).invoke(target));
 	}
 
+	public static int getWrittenFileCount(Object taskresult) throws Exception {
+		return (int) ReflectUtils.getMethodAssert(taskresult.getClass(), "getWrittenFileCount").invoke(taskresult);
+	}
+
+	public static int getSkippedFileCount(Object taskresult) throws Exception {
+		return (int) ReflectUtils.getMethodAssert(taskresult.getClass(), "getSkippedFileCount").invoke(taskresult);
+	}
+
 	private static Method getExecutionGetPathMethod(Object target) throws AssertionError {
 		Method getpathmethod = ReflectUtils.getMethodAssert(ReflectUtils.findInterfaceWithNameInHierarchy(
 				target.getClass(), "saker.std.api.file.location.ExecutionFileLocation"), "getPath");
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.ObjectUtils;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class DeduplicateBuildDirectoryCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private static final String PARAMETER_STORE_MAX_SIZE = "saker.std.file.copy.content.store.max.size";
+
+	private Path baseDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path localBuildDir = baseDir.resolve("build");
+	private Path contentStoreDir = localBuildDir.resolve("std.file.copy.content");
+	private Path copySource = baseDir.resolve("dir");
+	private Path copySourceA = copySource.resolve("a.txt");
+	private Path copySourceB = copySource.resolve("b.txt");
+	private Path copySourceC = copySource.resolve("c.txt");
+	private Path copyDirTarget = baseDir.resolve("copydir");
+	private Path copyTargetA = copyDirTarget.resolve("a.txt");
+	private Path copyTargetB = copyDirTarget.resolve("b.txt");
+	private Path copyTargetC = copyDirTarget.resolve("c.txt");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", copyDirTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(baseDir);
+		localfp.createDirectories(copySource);
+		localfp.createDirectories(localBuildDir);
+		parameters.setBuildDirectory(SakerPath.valueOf(localBuildDir));
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("same".getBytes()), copySourceA);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("same".getBytes()), copySourceB);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("other".getBytes()), copySourceC);
+
+		runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetA).toString(), "same");
+		assertEquals(localfp.getAllBytes(copyTargetB).toString(), "same");
+		assertEquals(localfp.getAllBytes(copyTargetC).toString(), "other");
+		//the targets with the same contents are linked to the same store entry
+		assertTrue(Files.isSameFile(copyTargetA, copyTargetB));
+		assertFalse(Files.isSameFile(copyTargetA, copyTargetC));
+		assertFalse(Files.isSameFile(copyTargetA, copySourceA));
+		assertEquals(getStoreContents(), setOf("same", "other"));
+
+		runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//modifying the source of one target doesn't affect the other target that has the same contents
+		localfp.delete(copySourceA);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("mod".getBytes()), copySourceA);
+		runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetA).toString(), "mod");
+		assertEquals(localfp.getAllBytes(copyTargetB).toString(), "same");
+		assertEquals(localfp.getAllBytes(copyTargetC).toString(), "other");
+		assertFalse(Files.isSameFile(copyTargetA, copyTargetB));
+		assertEquals(getStoreContents(), setOf("same", "other", "mod"));
+
+		runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//all entries are evicted at the start of the build as the store is larger than the maximum size
+		//only the changed file is linked again, the unchanged targets keep the contents of the evicted entries
+		parameters.setUserParameters(mapWithAdded(parameters.getUserParameters(), PARAMETER_STORE_MAX_SIZE, "0"));
+		localfp.delete(copySourceC);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("changed".getBytes()), copySourceC);
+		runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetA).toString(), "mod");
+		assertEquals(localfp.getAllBytes(copyTargetB).toString(), "same");
+		assertEquals(localfp.getAllBytes(copyTargetC).toString(), "changed");
+		assertEquals(getStoreContents(), setOf("changed"));
+	}
+
+	private Set<String> getStoreContents() throws IOException {
+		Set<String> result = new TreeSet<>();
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(contentStoreDir)) {
+			for (Path entry : ds) {
+				if (entry.getFileName().toString().startsWith(".")) {
+					//temporary file
+					continue;
+				}
+				result.add(new String(Files.readAllBytes(entry)));
+			}
+		}
+		return result;
+	}
+
+	private static Map<String, String> mapWithAdded(Map<String, String> map, String key, String value) {
+		TreeMap<String, String> result = ObjectUtils.newTreeMap(map);
+		result.put(key, value);
+		return result;
+	}
+}
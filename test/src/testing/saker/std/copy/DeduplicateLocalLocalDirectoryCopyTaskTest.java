@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class DeduplicateLocalLocalDirectoryCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource = buildDir.resolve("dir");
+	private Path copySourceA = copySource.resolve("a.txt");
+	private Path copySourceB = copySource.resolve("b.txt");
+	private Path copySourceC = copySource.resolve("c.txt");
+	private Path copyDirTarget = buildDir.resolve("copydir");
+	private Path copyTargetA = copyDirTarget.resolve("a.txt");
+	private Path copyTargetB = copyDirTarget.resolve("b.txt");
+	private Path copyTargetC = copyDirTarget.resolve("c.txt");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", copyDirTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(copySource);
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("same".getBytes()), copySourceA);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("same".getBytes()), copySourceB);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("other".getBytes()), copySourceC);
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetA).toString(), "same");
+		assertEquals(localfp.getAllBytes(copyTargetB).toString(), "same");
+		assertEquals(localfp.getAllBytes(copyTargetC).toString(), "other");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTargetA, copyTargetB, copyTargetC));
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//the targets with the same contents may be linked to the same file
+		//modifying one of them shouldn't affect the others
+		localfp.delete(copySourceA);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("mod".getBytes()), copySourceA);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetA).toString(), "mod");
+		assertEquals(localfp.getAllBytes(copyTargetB).toString(), "same");
+		assertEquals(localfp.getAllBytes(copyTargetC).toString(), "other");
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+	}
+}
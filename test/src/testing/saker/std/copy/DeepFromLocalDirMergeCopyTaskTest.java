@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+/**
+ * Copies a deep local directory hierarchy to an execution directory that already exists, so the contents are merged
+ * into the present directories.
+ */
+@SakerTest
+public class DeepFromLocalDirMergeCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private static final int DEPTH = 15;
+	private static final int FILE_COUNT = 4;
+
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource = buildDir.resolve("dir");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		return Collections.singletonMap("testing.local.location", copySource.toString());
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+
+		SakerPath copydirpath = PATH_WORKING_DIRECTORY.resolve("copydir");
+		NavigableSet<SakerPath> copiedfiles = new TreeSet<>();
+
+		Path dir = copySource;
+		SakerPath targetdir = copydirpath;
+		for (int d = 0; d < DEPTH; d++) {
+			dir = dir.resolve("l" + d);
+			targetdir = targetdir.resolve("l" + d);
+			//a sibling directory, so the merging steps out of the nested directories
+			Path siblingdir = dir.resolveSibling("s" + d);
+			localfp.createDirectories(siblingdir);
+			localfp.writeToFile(new UnsyncByteArrayInputStream(("s" + d).getBytes()), siblingdir.resolve("s.txt"));
+			copiedfiles.add(targetdir.resolveSibling("s" + d));
+			copiedfiles.add(targetdir.resolveSibling("s" + d).resolve("s.txt"));
+
+			localfp.createDirectories(dir);
+			copiedfiles.add(targetdir);
+			for (int f = 0; f < FILE_COUNT; f++) {
+				localfp.writeToFile(new UnsyncByteArrayInputStream(("f" + d + "_" + f).getBytes()),
+						dir.resolve("f" + f + ".txt"));
+				copiedfiles.add(targetdir.resolve("f" + f + ".txt"));
+			}
+		}
+
+		SakerPath copydirextra = copydirpath.resolve("extra.txt");
+		SakerPath nestedextra = copydirpath.resolve("l0/l1/extra.txt");
+		files.putFile(copydirextra, "extra");
+		files.putFile(nestedextra, "nested");
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(CopyTaskTestUtils.getExecutionPathCopiedFiles(res.getTargetTaskResult("copy")), copiedfiles);
+		assertEquals(files.getAllBytes(copydirextra).toString(), "extra");
+		assertEquals(files.getAllBytes(nestedextra).toString(), "nested");
+		targetdir = copydirpath;
+		for (int d = 0; d < DEPTH; d++) {
+			targetdir = targetdir.resolve("l" + d);
+			assertEquals(files.getAllBytes(targetdir.resolveSibling("s" + d).resolve("s.txt")).toString(), "s" + d);
+			for (int f = 0; f < FILE_COUNT; f++) {
+				assertEquals(files.getAllBytes(targetdir.resolve("f" + f + ".txt")).toString(), "f" + d + "_" + f);
+			}
+		}
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+		assertEquals(CopyTaskTestUtils.getExecutionPathCopiedFiles(res.getTargetTaskResult("copy")), copiedfiles);
+
+		Path modfile = copySource.resolve("l0/l1/l2/l3/l4/l5/l6/l7/l8/l9/l10/l11/l12/l13/l14/f2.txt");
+		localfp.writeToFile(new UnsyncByteArrayInputStream("mod".getBytes()), modfile);
+		res = runScriptTask("build");
+		assertEquals(files.getAllBytes(targetdir.resolve("f2.txt")).toString(), "mod");
+		assertEquals(files.getAllBytes(nestedextra).toString(), "nested");
+		assertEquals(CopyTaskTestUtils.getExecutionPathCopiedFiles(res.getTargetTaskResult("copy")), copiedfiles);
+	}
+}
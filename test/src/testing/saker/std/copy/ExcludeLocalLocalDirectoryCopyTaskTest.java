@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.task.exception.TaskParameterException;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class ExcludeLocalLocalDirectoryCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource = buildDir.resolve("dir");
+	private Path copySourcef1 = copySource.resolve("file1.txt");
+	private Path copySourceModules = copySource.resolve("lib/node_modules");
+	private Path copySourceModuleFile = copySourceModules.resolve("mod/index.js");
+	private Path copyDirTarget = buildDir.resolve("copydir");
+	private Path copyLibTarget = copyDirTarget.resolve("lib");
+	private Path copyTargetf1 = copyDirTarget.resolve("file1.txt");
+	private Path copyTargetModules = copyLibTarget.resolve("node_modules");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", copyDirTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(copySourceModuleFile.getParent());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1".getBytes()), copySourcef1);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("mod".getBytes()), copySourceModuleFile);
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf1).toString(), "f1");
+		assertException(IOException.class, () -> localfp.getFileAttributes(copyTargetModules));
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyLibTarget, copyTargetf1));
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//modifications in the excluded subtree don't cause the task to rerun
+		localfp.writeToFile(new UnsyncByteArrayInputStream("modified".getBytes()), copySourceModuleFile);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("added".getBytes()),
+				copySourceModules.resolve("added.js"));
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1mod".getBytes()), copySourcef1);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf1).toString(), "f1mod");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyLibTarget, copyTargetf1));
+
+		assertTaskException(TaskParameterException.class, () -> runScriptTask("nullexclude"));
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class IncrementalLocalLocalDirectoryCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource = buildDir.resolve("dir");
+	private Path copySourcef1 = copySource.resolve("file1.txt");
+	private Path copySourcef2 = copySource.resolve("d2/file2.txt");
+	private Path copySourcef3 = copySource.resolve("d3/file3.txt");
+
+	private Path copyDirTarget = buildDir.resolve("copydir");
+	private Path copyTargetf1 = copyDirTarget.resolve("file1.txt");
+	private Path copyTargetf2 = copyDirTarget.resolve("d2/file2.txt");
+	private Path copyTargetf3 = copyDirTarget.resolve("d3/file3.txt");
+	private Path extraPath = copyDirTarget.resolve("d3/extra.txt");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", copyDirTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(copySourcef2.getParent());
+		localfp.createDirectories(copySourcef3.getParent());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1".getBytes()), copySourcef1);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f2".getBytes()), copySourcef2);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f3".getBytes()), copySourcef3);
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf1).toString(), "f1");
+		assertEquals(localfp.getAllBytes(copyTargetf2).toString(), "f2");
+		assertEquals(localfp.getAllBytes(copyTargetf3).toString(), "f3");
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1mod".getBytes()), copySourcef1);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf1).toString(), "f1mod");
+		assertEquals(localfp.getAllBytes(copyTargetf2).toString(), "f2");
+		assertEquals(localfp.getAllBytes(copyTargetf3).toString(), "f3");
+
+		//the copied files are removed from the target if the source is removed
+		localfp.delete(copySourcef2);
+		localfp.delete(copySourcef2.getParent());
+		res = runScriptTask("build");
+		assertException(IOException.class, () -> localfp.getFileAttributes(copyTargetf2));
+		assertException(IOException.class, () -> localfp.getFileAttributes(copyTargetf2.getParent()));
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTargetf1, copyTargetf3, copyTargetf3.getParent()));
+
+		//directories with foreign files are kept
+		localfp.writeToFile(new UnsyncByteArrayInputStream("extra".getBytes()), extraPath);
+		localfp.delete(copySourcef3);
+		localfp.delete(copySourcef3.getParent());
+		res = runScriptTask("build");
+		assertException(IOException.class, () -> localfp.getFileAttributes(copyTargetf3));
+		assertEquals(localfp.getAllBytes(extraPath).toString(), "extra");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTargetf1));
+
+		//modified targets are copied again
+		localfp.writeToFile((InputStream) new UnsyncByteArrayInputStream("xyz".getBytes()), copyTargetf1);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf1).toString(), "f1mod");
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class LargeFileLocalLocalDirectoryCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource = buildDir.resolve("dir");
+	private Path copySourceLarge = copySource.resolve("large.bin");
+	private Path copySourceSmall = copySource.resolve("small.txt");
+	private Path copyDirTarget = buildDir.resolve("copydir");
+	private Path copyTargetLarge = copyDirTarget.resolve("large.bin");
+	private Path copyTargetSmall = copyDirTarget.resolve("small.txt");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", copyDirTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(copySource);
+
+		byte[] large = createContents(3 * 1024 * 1024 + 17, 1);
+		localfp.writeToFile(new UnsyncByteArrayInputStream(large), copySourceLarge);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("small".getBytes()), copySourceSmall);
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertTrue(Arrays.equals(localfp.getAllBytes(copyTargetLarge).copy(), large));
+		assertEquals(localfp.getAllBytes(copyTargetSmall).toString(), "small");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTargetLarge, copyTargetSmall));
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//the target is truncated if the file gets smaller
+		byte[] smaller = createContents(2 * 1024 * 1024 + 3, 7);
+		localfp.writeToFile(new UnsyncByteArrayInputStream(smaller), copySourceLarge);
+		res = runScriptTask("build");
+		assertTrue(Arrays.equals(localfp.getAllBytes(copyTargetLarge).copy(), smaller));
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+	}
+
+	private static byte[] createContents(int size, int seed) {
+		byte[] result = new byte[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = (byte) (i * 31 + seed);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import saker.build.file.path.SakerPath;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+/**
+ * Tests copying a large number of in-memory files in the build execution file hierarchy.
+ */
+@SakerTest
+public class ManyFilesExecDirCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private static final int DIRECTORY_COUNT = 1000;
+	private static final int FILES_PER_DIRECTORY = 100;
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		SakerPath dirpath = PATH_WORKING_DIRECTORY.resolve("dir");
+		SakerPath copydirpath = PATH_WORKING_DIRECTORY.resolve("copydir");
+		for (int d = 0; d < DIRECTORY_COUNT; d++) {
+			SakerPath subdirpath = dirpath.resolve("d" + (d % 10), "sub" + d);
+			for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+				files.putFile(subdirpath.resolve("file" + f + ".txt"), "f" + d + "_" + f);
+			}
+		}
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(files.getAllBytes(copydirpath.resolve("d0/sub0/file0.txt")).toString(), "f0_0");
+		assertEquals(files.getAllBytes(copydirpath.resolve("d9/sub999/file99.txt")).toString(), "f999_99");
+		assertEquals(CopyTaskTestUtils.getExecutionPathCopiedFiles(res.getTargetTaskResult("copy")).size(),
+				DIRECTORY_COUNT * FILES_PER_DIRECTORY + DIRECTORY_COUNT + 10);
+		assertEquals(CopyTaskTestUtils.getWrittenFileCount(res.getTargetTaskResult("copy")),
+				DIRECTORY_COUNT * FILES_PER_DIRECTORY);
+
+		runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		files.putFile(dirpath.resolve("d5/sub505/file50.txt"), "mod");
+		runScriptTask("build");
+		assertEquals(files.getAllBytes(copydirpath.resolve("d5/sub505/file50.txt")).toString(), "mod");
+		assertEquals(files.getAllBytes(copydirpath.resolve("d5/sub505/file51.txt")).toString(), "f505_51");
+	}
+}
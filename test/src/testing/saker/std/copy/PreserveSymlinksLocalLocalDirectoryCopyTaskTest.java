@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class PreserveSymlinksLocalLocalDirectoryCopyTaskTest
+		extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path sharedDir = buildDir.resolve("shared");
+	private Path sharedFile = sharedDir.resolve("lib.txt");
+	private Path copySource = buildDir.resolve("dir");
+	private Path copySourcef1 = copySource.resolve("file1.txt");
+	private Path copySourceDirLink = copySource.resolve("sysroot");
+	private Path copySourceFileLink = copySource.resolve("file1.lnk");
+	private Path copyDirTarget = buildDir.resolve("copydir");
+	private Path copyTargetf1 = copyDirTarget.resolve("file1.txt");
+	private Path copyTargetDirLink = copyDirTarget.resolve("sysroot");
+	private Path copyTargetFileLink = copyDirTarget.resolve("file1.lnk");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", copyDirTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(sharedDir);
+		localfp.createDirectories(copySource);
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("lib".getBytes()), sharedFile);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1".getBytes()), copySourcef1);
+		Files.createSymbolicLink(copySourceDirLink, Paths.get("..", "shared"));
+		Files.createSymbolicLink(copySourceFileLink, Paths.get("file1.txt"));
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf1).toString(), "f1");
+		assertTrue(Files.isSymbolicLink(copyTargetDirLink));
+		assertEquals(Files.readSymbolicLink(copyTargetDirLink), Paths.get("..", "shared"));
+		assertTrue(Files.isSymbolicLink(copyTargetFileLink));
+		assertEquals(Files.readSymbolicLink(copyTargetFileLink), Paths.get("file1.txt"));
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")),
+				setOf(copyTargetf1, copyTargetDirLink, copyTargetFileLink));
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//the directory that the link points to is not tracked
+		localfp.writeToFile(new UnsyncByteArrayInputStream("libmod".getBytes()), sharedFile);
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//the link itself is tracked
+		Files.delete(copySourceFileLink);
+		Files.createSymbolicLink(copySourceFileLink, Paths.get("sysroot", "lib.txt"));
+		res = runScriptTask("build");
+		assertEquals(Files.readSymbolicLink(copyTargetFileLink), Paths.get("sysroot", "lib.txt"));
+		assertEquals(localfp.getAllBytes(copyTargetFileLink).toString(), "libmod");
+	}
+}
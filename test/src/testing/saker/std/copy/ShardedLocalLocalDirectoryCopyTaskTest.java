@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+
+@SakerTest
+public class ShardedLocalLocalDirectoryCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private static final int DIRECTORY_COUNT = 4;
+	private static final int FILE_COUNT = 16;
+
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource = buildDir.resolve("dir");
+	private Path copyDirTarget = buildDir.resolve("copydir");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", copyDirTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+
+		Set<Path> targetfiles = new TreeSet<>();
+		for (int d = 0; d < DIRECTORY_COUNT; d++) {
+			Path dir = copySource.resolve("d" + d);
+			localfp.createDirectories(dir);
+			targetfiles.add(copyDirTarget.resolve(copySource.relativize(dir)));
+			for (int f = 0; f < FILE_COUNT; f++) {
+				Path file = dir.resolve("f" + f + ".txt");
+				localfp.writeToFile(new UnsyncByteArrayInputStream(("content_" + d + "_" + f).getBytes()), file);
+				targetfiles.add(copyDirTarget.resolve(copySource.relativize(file)));
+			}
+		}
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")), targetfiles);
+		assertEquals(CopyTaskTestUtils.getWrittenFileCount(res.getTargetTaskResult("copy")),
+				DIRECTORY_COUNT * FILE_COUNT);
+		for (int d = 0; d < DIRECTORY_COUNT; d++) {
+			Path dir = copyDirTarget.resolve("d" + d);
+			for (int f = 0; f < FILE_COUNT; f++) {
+				assertEquals(localfp.getAllBytes(dir.resolve("f" + f + ".txt")).toString(), "content_" + d + "_" + f);
+			}
+		}
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("mod".getBytes()), copySource.resolve("d2/f7.txt"));
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyDirTarget.resolve("d2/f7.txt")).toString(), "mod");
+		assertEquals(CopyTaskTestUtils.getLocalPathCopiedFiles(res.getTargetTaskResult("copy")), targetfiles);
+	}
+}
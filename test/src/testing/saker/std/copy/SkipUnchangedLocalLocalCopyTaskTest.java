@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class SkipUnchangedLocalLocalCopyTaskTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource = buildDir.resolve("copysource.txt");
+	private Path copyTarget = buildDir.resolve("copytarget.txt");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", copyTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(buildDir);
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("hello".getBytes()), copySource);
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTarget).toString(), "hello");
+		assertEquals(CopyTaskTestUtils.getWrittenFileCount(res.getTargetTaskResult("copy")), 1);
+		assertEquals(CopyTaskTestUtils.getSkippedFileCount(res.getTargetTaskResult("copy")), 0);
+
+		FileTime targetmodtime = FileTime.fromMillis(1_000_000_000_000L);
+		Files.setLastModifiedTime(copyTarget, targetmodtime);
+
+		//rewrite the source with the same contents, the target shouldn't be modified
+		localfp.writeToFile(new UnsyncByteArrayInputStream("hello".getBytes()), copySource);
+		Files.setLastModifiedTime(copySource, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTarget).toString(), "hello");
+		assertEquals(Files.getLastModifiedTime(copyTarget), targetmodtime);
+		assertEquals(CopyTaskTestUtils.getWrittenFileCount(res.getTargetTaskResult("copy")), 0);
+		assertEquals(CopyTaskTestUtils.getSkippedFileCount(res.getTargetTaskResult("copy")), 1);
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("hellomod".getBytes()), copySource);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTarget).toString(), "hellomod");
+		assertEquals(CopyTaskTestUtils.getWrittenFileCount(res.getTargetTaskResult("copy")), 1);
+		assertEquals(CopyTaskTestUtils.getSkippedFileCount(res.getTargetTaskResult("copy")), 0);
+	}
+}
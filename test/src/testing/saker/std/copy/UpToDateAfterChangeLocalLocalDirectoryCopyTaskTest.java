@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.copy;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+/**
+ * Tests that the local output files are recorded with their attributes after they were written, so an unchanged
+ * rebuild doesn't rerun the copying.
+ * <p>
+ * The target is outside of the build directory, so its attributes are cached during the build.
+ */
+@SakerTest
+public class UpToDateAfterChangeLocalLocalDirectoryCopyTaskTest
+		extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path copySource = buildDir.resolve("dir");
+	private Path copySourcef1 = copySource.resolve("file1.txt");
+	private Path copySourcef2 = copySource.resolve("d2/file2.txt");
+
+	private Path copyDirTarget = buildDir.resolve("copydir");
+	private Path copyTargetf1 = copyDirTarget.resolve("file1.txt");
+	private Path copyTargetf2 = copyDirTarget.resolve("d2/file2.txt");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.source", copySource.toString());
+		result.put("testing.location.target", copyDirTarget.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(copySourcef2.getParent());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1".getBytes()), copySourcef1);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f2".getBytes()), copySourcef2);
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf1).toString(), "f1");
+		assertEquals(localfp.getAllBytes(copyTargetf2).toString(), "f2");
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1mod".getBytes()), copySourcef1);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf1).toString(), "f1mod");
+		assertEquals(CopyTaskTestUtils.getWrittenFileCount(res.getTargetTaskResult("copy")), 1);
+
+		//the rewritten target is recorded with its new attributes
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//only the modified file is copied, the previous targets are considered up to date
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f2mod".getBytes()), copySourcef2);
+		res = runScriptTask("build");
+		assertEquals(localfp.getAllBytes(copyTargetf2).toString(), "f2mod");
+		assertEquals(CopyTaskTestUtils.getWrittenFileCount(res.getTargetTaskResult("copy")), 1);
+		assertEquals(CopyTaskTestUtils.getSkippedFileCount(res.getTargetTaskResult("copy")), 0);
+
+		res = runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+	}
+}
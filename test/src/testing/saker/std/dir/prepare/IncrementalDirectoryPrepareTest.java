@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.dir.prepare;
+
+import java.io.IOException;
+
+import saker.build.file.path.SakerPath;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class IncrementalDirectoryPrepareTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		SakerPath outdir = PATH_BUILD_DIRECTORY.resolve("std.dir.prepare/default");
+		SakerPath f1path = PATH_WORKING_DIRECTORY.resolve("f1.txt");
+		SakerPath f2path = PATH_WORKING_DIRECTORY.resolve("dir/f2.txt");
+		SakerPath f3path = PATH_WORKING_DIRECTORY.resolve("dir/sub/deep/f3.txt");
+		files.putFile(f1path, "f1");
+		files.putFile(f2path, "f2");
+		files.putFile(f3path, "f3");
+
+		runScriptTask("build");
+		assertEquals(files.getAllBytes(outdir.resolve("f1.txt")).toString(), "f1");
+		assertEquals(files.getAllBytes(outdir.resolve("dir/f2.txt")).toString(), "f2");
+		assertEquals(files.getAllBytes(outdir.resolve("dir/sub/deep/f3.txt")).toString(), "f3");
+
+		runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		files.putFile(f1path, "f1mod");
+		runScriptTask("build");
+		assertEquals(files.getAllBytes(outdir.resolve("f1.txt")).toString(), "f1mod");
+		assertEquals(files.getAllBytes(outdir.resolve("dir/f2.txt")).toString(), "f2");
+		assertEquals(files.getAllBytes(outdir.resolve("dir/sub/deep/f3.txt")).toString(), "f3");
+
+		//the modified output is restored, the others are kept
+		files.putFile(outdir.resolve("dir/f2.txt"), "xyz");
+		runScriptTask("build");
+		assertEquals(files.getAllBytes(outdir.resolve("f1.txt")).toString(), "f1mod");
+		assertEquals(files.getAllBytes(outdir.resolve("dir/f2.txt")).toString(), "f2");
+
+		//all the stale directories are removed, not only the innermost one
+		files.delete(f3path);
+		runScriptTask("build");
+		assertException(IOException.class, () -> files.getFileAttributes(outdir.resolve("dir/sub/deep/f3.txt")));
+		assertException(IOException.class, () -> files.getFileAttributes(outdir.resolve("dir/sub/deep")));
+		assertException(IOException.class, () -> files.getFileAttributes(outdir.resolve("dir/sub")));
+		assertEquals(files.getAllBytes(outdir.resolve("dir/f2.txt")).toString(), "f2");
+
+		runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+	}
+
+}
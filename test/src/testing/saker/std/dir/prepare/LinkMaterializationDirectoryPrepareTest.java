@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.dir.prepare;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+/**
+ * The build directory of the test is on the local file system, so the local input files are linked.
+ */
+@SakerTest
+public class LinkMaterializationDirectoryPrepareTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path baseDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path localBuildDir = baseDir.resolve("build");
+	private Path f1 = baseDir.resolve("f1.txt");
+	private Path outDir = localBuildDir.resolve("std.dir.prepare/default");
+	private Path outF1 = outDir.resolve("f1.txt");
+	private Path outF2 = outDir.resolve("f2.txt");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.f1", f1.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(baseDir);
+		localfp.createDirectories(localBuildDir);
+		parameters.setBuildDirectory(SakerPath.valueOf(localBuildDir));
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1".getBytes()), f1);
+		files.putFile(PATH_WORKING_DIRECTORY.resolve("dir/f2.txt"), "f2");
+
+		runScriptTask("hardlink");
+		assertFalse(Files.isSymbolicLink(outF1));
+		assertTrue(Files.isSameFile(outF1, f1));
+		assertEquals(localfp.getAllBytes(outF1).toString(), "f1");
+		assertEquals(localfp.getAllBytes(outF2).toString(), "f2");
+
+		runScriptTask("hardlink");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//the hard link is replaced by a copy, writing the output doesn't modify the input
+		runScriptTask("copy");
+		assertFalse(Files.isSymbolicLink(outF1));
+		assertFalse(Files.isSameFile(outF1, f1));
+		assertEquals(localfp.getAllBytes(outF1).toString(), "f1");
+		localfp.writeToFile(new UnsyncByteArrayInputStream("outmod".getBytes()), outF1);
+		assertEquals(localfp.getAllBytes(f1).toString(), "f1");
+
+		runScriptTask("symlink");
+		assertTrue(Files.isSymbolicLink(outF1));
+		assertTrue(Files.isSameFile(outF1, f1));
+		assertEquals(localfp.getAllBytes(outF1).toString(), "f1");
+		assertEquals(localfp.getAllBytes(outF2).toString(), "f2");
+
+		runScriptTask("symlink");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		//the symbolic link is replaced by a copy, writing the output doesn't modify the input
+		runScriptTask("copy");
+		assertFalse(Files.isSymbolicLink(outF1));
+		assertFalse(Files.isSameFile(outF1, f1));
+		assertEquals(localfp.getAllBytes(outF1).toString(), "f1");
+		localfp.writeToFile(new UnsyncByteArrayInputStream("outmod".getBytes()), outF1);
+		assertEquals(localfp.getAllBytes(f1).toString(), "f1");
+		assertEquals(localfp.getAllBytes(outF2).toString(), "f2");
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.dir.prepare;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import saker.build.file.path.SakerPath;
+import saker.build.file.provider.LocalFileProvider;
+import saker.build.thirdparty.saker.util.io.UnsyncByteArrayInputStream;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+@SakerTest
+public class LocalFilesDirectoryPrepareTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private Path buildDir = getTestingBaseBuildDirectory().resolve(getClass().getName().replace('.', '/'));
+	private Path f1 = buildDir.resolve("f1.txt");
+	private Path f2 = buildDir.resolve("f2.txt");
+	private Path f3 = buildDir.resolve("dir/f3.txt");
+
+	@Override
+	protected Map<String, ?> getTaskVariables() {
+		Map<String, Object> result = new TreeMap<>();
+		result.put("testing.location.f1", f1.toString());
+		result.put("testing.location.f2", f2.toString());
+		result.put("testing.location.f3", f3.toString());
+		return result;
+	}
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		LocalFileProvider localfp = LocalFileProvider.getInstance();
+		localfp.clearDirectoryRecursively(buildDir);
+		localfp.createDirectories(f3.getParent());
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f1".getBytes()), f1);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f2".getBytes()), f2);
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f3".getBytes()), f3);
+
+		SakerPath outdir = PATH_BUILD_DIRECTORY.resolve("std.dir.prepare/default");
+
+		runScriptTask("build");
+		assertEquals(files.getAllBytes(outdir.resolve("a/b/f1.txt")).toString(), "f1");
+		assertEquals(files.getAllBytes(outdir.resolve("a/b/f2.txt")).toString(), "f2");
+		assertEquals(files.getAllBytes(outdir.resolve("c/f3.txt")).toString(), "f3");
+
+		runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		localfp.writeToFile(new UnsyncByteArrayInputStream("f2mod".getBytes()), f2);
+		runScriptTask("build");
+		assertEquals(files.getAllBytes(outdir.resolve("a/b/f1.txt")).toString(), "f1");
+		assertEquals(files.getAllBytes(outdir.resolve("a/b/f2.txt")).toString(), "f2mod");
+		assertEquals(files.getAllBytes(outdir.resolve("c/f3.txt")).toString(), "f3");
+
+		files.putFile(outdir.resolve("c/f3.txt"), "xyz");
+		runScriptTask("build");
+		assertEquals(files.getAllBytes(outdir.resolve("c/f3.txt")).toString(), "f3");
+
+		runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2020 Bence Sipka
+ *
+ * This program is free software: you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package testing.saker.std.dir.prepare;
+
+import java.util.Set;
+
+import saker.build.file.path.SakerPath;
+import saker.build.thirdparty.saker.util.ReflectUtils;
+import testing.saker.SakerTest;
+import testing.saker.nest.util.RepositoryLoadingVariablesMetricEnvironmentTestCase;
+
+/**
+ * Tests preparing a directory with a deep and wide input hierarchy.
+ */
+@SakerTest
+public class ManyFilesDirectoryPrepareTest extends RepositoryLoadingVariablesMetricEnvironmentTestCase {
+	private static final int TOP_DIRECTORY_COUNT = 20;
+	private static final int LEAF_DIRECTORY_COUNT = 100;
+	private static final int FILES_PER_DIRECTORY = 20;
+	private static final String DEEP_PATH = "l1/l2/l3/l4/l5/l6/l7/l8";
+
+	@Override
+	protected void runTestImpl() throws Throwable {
+		SakerPath dirpath = PATH_WORKING_DIRECTORY.resolve("dir");
+		SakerPath outdir = PATH_BUILD_DIRECTORY.resolve("std.dir.prepare/default");
+		for (int t = 0; t < TOP_DIRECTORY_COUNT; t++) {
+			for (int l = 0; l < LEAF_DIRECTORY_COUNT; l++) {
+				SakerPath leafpath = dirpath.resolve("t" + t + "/" + DEEP_PATH + "/leaf" + l);
+				for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+					files.putFile(leafpath.resolve("f" + f + ".txt"), t + "_" + l + "_" + f);
+				}
+			}
+		}
+		int filecount = TOP_DIRECTORY_COUNT * LEAF_DIRECTORY_COUNT * FILES_PER_DIRECTORY;
+
+		CombinedTargetTaskResult res;
+		res = runScriptTask("build");
+		assertEquals(getFilePaths(res.getTargetTaskResult("prepare")).size(), filecount);
+		assertEquals(files.getAllBytes(outdir.resolve("t0/" + DEEP_PATH + "/leaf0/f0.txt")).toString(), "0_0_0");
+		assertEquals(files.getAllBytes(outdir.resolve("t19/" + DEEP_PATH + "/leaf99/f19.txt")).toString(), "19_99_19");
+
+		runScriptTask("build");
+		assertEmpty(getMetric().getRunTaskIdFactories());
+
+		files.putFile(dirpath.resolve("t7/" + DEEP_PATH + "/leaf50/f10.txt"), "mod");
+		res = runScriptTask("build");
+		assertEquals(getFilePaths(res.getTargetTaskResult("prepare")).size(), filecount);
+		assertEquals(files.getAllBytes(outdir.resolve("t7/" + DEEP_PATH + "/leaf50/f10.txt")).toString(), "mod");
+		assertEquals(files.getAllBytes(outdir.resolve("t7/" + DEEP_PATH + "/leaf50/f11.txt")).toString(), "7_50_11");
+	}
+
+	private static Set<?> getFilePaths(Object taskresult) throws Exception {
+		return (Set<?>) ReflectUtils.getMethodAssert(ReflectUtils.findInterfaceWithNameInHierarchy(
+				taskresult.getClass(), "saker.std.api.dir.prepare.PrepareDirectoryWorkerTaskOutput"), "getFilePaths")
+				.invoke(taskresult);
+	}
+
+}